@@ -0,0 +1,23 @@
+#!/bin/sh
+# End to end frame time benchmark, see nodegraph.bench.FrameBenchmark:
+#
+#   bench/frames.sh --sizes=100,1000,10000 --renderer=1
+#
+# With MONOCLE_JAR pointing to an openjfx-monocle jar, it runs headless with
+# Monocle and software rendering. Otherwise, without a display, it runs under
+# xvfb-run. Results are appended to build/bench/frames.json, one JSON line
+# per scenario and size.
+
+cd "$(dirname "$0")/.." || exit 1
+mkdir -p build/bench
+
+if [ -n "$MONOCLE_JAR" ]; then
+    exec ant bench-frames -Dbench.frames.args="$*" -Dbench.frames.classpath="$MONOCLE_JAR" \
+        -Dbench.frames.jvmargs="-Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw"
+fi
+
+if [ -z "$DISPLAY" ] && command -v xvfb-run > /dev/null; then
+    exec xvfb-run -a -s "-screen 0 1280x1024x24" ant bench-frames -Dbench.frames.args="$*"
+fi
+
+exec ant bench-frames -Dbench.frames.args="$*"
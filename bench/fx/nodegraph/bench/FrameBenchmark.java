@@ -0,0 +1,404 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.bench;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.event.Event;
+import javafx.event.EventType;
+import javafx.fxml.FXMLLoader;
+import javafx.geometry.Point2D;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.control.Button;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.TextArea;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Pane;
+import javafx.stage.Stage;
+import nodegraph.GraphNode;
+import nodegraph.GraphView;
+import nodegraph.MainController;
+import nodegraph.NodeGraph;
+import nodegraph.io.EdgeList;
+
+/**
+ * End to end frame times of the application for generated graphs of
+ * increasing size, replaying these scenarios for every size:
+ * <ul>
+ * <li>place: "Place" until the layout is done.</li>
+ * <li>drag: dragging the node n0 (the hub of star and scale-free graphs)
+ * in circles, one mouse event per frame.</li>
+ * <li>edgetype: switching the edge type back and forth.</li>
+ * </ul>
+ * Frame times are the time between pulses. Every scenario appends a JSON
+ * line with their percentiles, a histogram and heap usage to the output
+ * file. Options (all optional):
+ * <pre>
+ * --sizes=100,1000,10000  --type=1 (see GraphGenerator.TYPES)
+ * --renderer=0 (see GraphView.TYPES)  --out=build/bench/frames.json
+ * </pre>
+ * See bench/frames.sh for running it without a display.
+ *
+ * @author elio
+ */
+public class FrameBenchmark extends Application {
+    private static final String DEFAULT_SIZES = "100,1000,5000,20000";
+    private static final String DEFAULT_OUT = "build/bench/frames.json";
+
+    private static final int DRAG_FRAMES = 240;
+    private static final double DRAG_RADIUS = 150;
+    private static final int EDGE_TYPE_SWITCHES = 10;
+    private static final int FRAMES_PER_SWITCH = 30;
+
+    /**
+     * Frames to wait after an interaction, so the full quality redraw
+     * (see MotionTracker) is measured too.
+     */
+    private static final int SETTLE_FRAMES = 30;
+
+    private static final long LAYOUT_TIMEOUT = TimeUnit.MINUTES.toNanos(10);
+
+    /**
+     * Upper bounds of the histogram buckets, in milliseconds. The last
+     * bucket takes everything above.
+     */
+    private static final double[] BUCKETS = {8, 16.7, 33.3, 50, 100, 250, 1000};
+
+    private MainController controller;
+    private Map<String, Object> namespace;
+    private final Frames frames = new Frames();
+
+    private int[] sizes;
+    private byte type;
+    private int renderer;
+    private PrintWriter out;
+
+    @Override
+    public void start(Stage stage) throws Exception {
+        Map<String, String> options = getParameters().getNamed();
+        String[] values = get(options, "sizes", DEFAULT_SIZES).split(",");
+        sizes = new int[values.length];
+        for (int i = 0; i < values.length; i++)
+            sizes[i] = Integer.parseInt(values[i].trim());
+        type = Byte.parseByte(get(options, "type", String.valueOf(GraphGenerator.TYPE_SCALE_FREE)));
+        renderer = Integer.parseInt(get(options, "renderer", String.valueOf(GraphView.TYPE_SCENE_GRAPH)));
+        out = new PrintWriter(new FileWriter(get(options, "out", DEFAULT_OUT), true));
+
+        // Same as NodeGraph.start()...
+        ResourceBundle bundle = ResourceBundle.getBundle("nodegraph.locale.Bundle", new Locale("en", "US"));
+        FXMLLoader loader = new FXMLLoader(NodeGraph.class.getResource("Main.fxml"), bundle);
+        Parent root = (Parent)loader.load();
+        controller = loader.getController();
+        namespace = loader.getNamespace();
+
+        stage.setScene(new Scene(root));
+        stage.show();
+        frames.start();
+
+        Thread driver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int status = 0;
+                try {
+                    for (int size : sizes)
+                        run(size);
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    status = 1;
+                } finally {
+                    out.close();
+                }
+                Platform.exit();
+                System.exit(status);
+            }
+        }, "benchmark");
+        driver.setDaemon(true);
+        driver.start();
+    }
+
+    private static String get (Map<String, String> options, String name, String value) {
+        return options.containsKey(name) ? options.get(name) : value;
+    }
+
+    private void run (int size) throws Exception {
+        final String text = GraphGenerator.generate(type, size, Benchmarks.SEED, true);
+        fx(new Callable<Void>() {
+            @Override
+            public Void call() {
+                ((ChoiceBox<?>)namespace.get("renderers")).getSelectionModel().select(renderer);
+                ((TextArea)namespace.get("textAreaNodes")).setText(text);
+                return null;
+            }
+        });
+        frames.await(SETTLE_FRAMES);
+
+        place(size);
+        drag(size);
+        switchEdgeTypes(size);
+    }
+
+    private void place (int size) throws Exception {
+        begin();
+        fx(new Callable<Void>() {
+            @Override
+            public Void call() {
+                ((Button)namespace.get("buttonPlace")).fire();
+                return null;
+            }
+        });
+
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < LAYOUT_TIMEOUT && fx(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return controller.isLayoutRunning();
+            }
+        }))
+            frames.await(1);
+
+        frames.await(SETTLE_FRAMES);
+        end("place", size);
+    }
+
+    private void drag (int size) throws Exception {
+        final Node[] target = new Node[1];
+        final Point2D[] center = new Point2D[1];
+        fx(new Callable<Void>() {
+            @Override
+            public Void call() {
+                EdgeList edgeList = controller.getEdgeList();
+                int hub = Math.max(0, edgeList.getLabels().get("n0"));
+                GraphView view = controller.getView();
+                Pane canvas = (Pane)namespace.get("canvas");
+
+                // Viewport is reset on "Place", so graph and pane coordinates match...
+                center[0] = canvas.localToScene(view.getX(hub), view.getY(hub));
+                target[0] = findTarget(canvas, hub);
+                return null;
+            }
+        });
+
+        begin();
+        mouse(target[0], MouseEvent.MOUSE_PRESSED, center[0].getX(), center[0].getY());
+        mouse(target[0], MouseEvent.DRAG_DETECTED, center[0].getX(), center[0].getY());
+        for (int f = 1; f <= DRAG_FRAMES; f++) {
+            double angle = 2 * Math.PI * f / 60;
+            double radius = DRAG_RADIUS * Math.min(1, f / 30.0);
+            mouse(target[0], MouseEvent.MOUSE_DRAGGED,
+                    center[0].getX() + radius * Math.sin(angle), center[0].getY() - radius + radius * Math.cos(angle));
+            frames.await(1);
+        }
+        mouse(target[0], MouseEvent.MOUSE_RELEASED, center[0].getX(), center[0].getY());
+        frames.await(SETTLE_FRAMES);
+        end("drag", size);
+    }
+
+    private void switchEdgeTypes (int size) throws Exception {
+        begin();
+        for (int s = 0; s < EDGE_TYPE_SWITCHES; s++) {
+            fx(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    ChoiceBox<?> edgeTypes = (ChoiceBox<?>)namespace.get("edgeTypes");
+                    int index = edgeTypes.getSelectionModel().getSelectedIndex();
+                    edgeTypes.getSelectionModel().select((index + 1) % edgeTypes.getItems().size());
+                    return null;
+                }
+            });
+            frames.await(FRAMES_PER_SWITCH);
+        }
+        end("edgetype", size);
+    }
+
+    /**
+     * @return the body of the given node with the scene graph renderer, or
+     * the canvas with the canvas renderer.
+     */
+    private static Node findTarget (Parent parent, int node) {
+        for (Node child : parent.getChildrenUnmodifiable()) {
+            if (child instanceof Canvas)
+                return child;
+            if (child.getUserData() instanceof GraphNode && ((GraphNode)child.getUserData()).getId() == node)
+                return child;
+            if (child instanceof Parent) {
+                Node target = findTarget((Parent)child, node);
+                if (target != null)
+                    return target;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Fire a mouse event as if the primary button was pressed at (sceneX, sceneY).
+     */
+    private void mouse (final Node target, final EventType<MouseEvent> type, final double sceneX, final double sceneY)
+            throws Exception {
+        if (target == null)
+            throw new IllegalStateException("Node n0 is not displayed");
+
+        fx(new Callable<Void>() {
+            @Override
+            public Void call() {
+                Event.fireEvent(target, new MouseEvent(type, sceneX, sceneY, sceneX, sceneY, MouseButton.PRIMARY, 1,
+                        false, false, false, false, true, false, false, false, false, false, null));
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Start measuring a scenario.
+     */
+    private void begin () throws Exception {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                pool.resetPeakUsage();
+
+        fx(new Callable<Void>() {
+            @Override
+            public Void call() {
+                frames.reset();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Stop measuring a scenario and write its results.
+     */
+    private void end (String scenario, int size) throws Exception {
+        final long[] times = fx(new Callable<long[]>() {
+            @Override
+            public long[] call() {
+                return frames.getTimes();
+            }
+        });
+        EdgeList edgeList = fx(new Callable<EdgeList>() {
+            @Override
+            public EdgeList call() {
+                return controller.getEdgeList();
+            }
+        });
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                peak += pool.getPeakUsage().getUsed();
+        long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+        Arrays.sort(times);
+        long total = 0;
+        for (long time : times)
+            total += time;
+
+        int[] histogram = new int[BUCKETS.length + 1];
+        for (long time : times) {
+            int b = 0;
+            while (b < BUCKETS.length && time / 1e6 > BUCKETS[b])
+                b++;
+            histogram[b]++;
+        }
+
+        StringBuilder json = new StringBuilder();
+        json.append(String.format(Locale.ROOT,
+                "{\"scenario\": \"%s\", \"renderer\": \"%s\", \"type\": \"%s\", \"size\": %d, "
+                + "\"nodes\": %d, \"edges\": %d, \"frames\": %d, \"durationMs\": %.1f, ",
+                scenario, GraphView.TYPES[renderer], GraphGenerator.TYPES[type], size,
+                edgeList.getNodeCount(), edgeList.getEdgeCount(), times.length, total / 1e6));
+        json.append(String.format(Locale.ROOT,
+                "\"frameMs\": {\"p50\": %.2f, \"p90\": %.2f, \"p99\": %.2f, \"max\": %.2f}, ",
+                percentile(times, 50), percentile(times, 90), percentile(times, 99), percentile(times, 100)));
+        json.append("\"histogram\": {");
+        for (int b = 0; b <= BUCKETS.length; b++)
+            json.append(b == 0 ? "" : ", ").append('"')
+                    .append(b < BUCKETS.length ? "<=" + BUCKETS[b] : ">" + BUCKETS[b - 1])
+                    .append("\": ").append(histogram[b]);
+        json.append(String.format(Locale.ROOT, "}, \"heapUsedMb\": %.1f, \"heapPeakMb\": %.1f}",
+                used / 1048576.0, peak / 1048576.0));
+
+        out.println(json);
+        out.flush();
+        System.out.println(json);
+    }
+
+    private static double percentile (long[] sorted, int p) {
+        if (sorted.length == 0)
+            return 0;
+        return sorted[Math.min(sorted.length - 1, sorted.length * p / 100)] / 1e6;
+    }
+
+    /**
+     * Run on the JavaFX thread and wait for the result.
+     */
+    private static <T> T fx (Callable<T> callable) throws Exception {
+        FutureTask<T> task = new FutureTask<>(callable);
+        Platform.runLater(task);
+        return task.get();
+    }
+
+    /**
+     * Time between pulses.
+     */
+    private static class Frames extends AnimationTimer {
+        private long[] times = new long[1024];
+        private int count;
+        private long last;
+        private final Semaphore pulses = new Semaphore(0);
+
+        @Override
+        public void handle(long now) {
+            if (last > 0) {
+                if (count == times.length)
+                    times = Arrays.copyOf(times, count * 2);
+                times[count++] = now - last;
+            }
+            last = now;
+            pulses.release();
+        }
+
+        void reset () {
+            count = 0;
+            last = 0;
+        }
+
+        long[] getTimes () {
+            return Arrays.copyOf(times, count);
+        }
+
+        /**
+         * Wait for the given amount of pulses, from now on.
+         */
+        void await (int pulseCount) throws InterruptedException {
+            pulses.drainPermits();
+            pulses.acquire(pulseCount);
+        }
+    }
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.bench;
+
+import nodegraph.io.EdgeList;
+import nodegraph.layout.LayoutGraph;
+
+/**
+ * Graphs shared by the benchmarks.
+ *
+ * @author elio
+ */
+final class Benchmarks {
+    /**
+     * Seed of every generated graph, so runs are comparable.
+     */
+    static final long SEED = 42;
+
+    /**
+     * Side of the area graphs are laid out in.
+     */
+    static final double AREA_SIZE = 1000;
+
+    private Benchmarks () {
+    }
+
+    /**
+     * @return a generated graph placed on a circle, as "Place" does.
+     */
+    static LayoutGraph layoutGraph (byte type, int nodes) {
+        EdgeList edgeList = GraphGenerator.generateEdgeList(type, nodes, SEED, false);
+        LayoutGraph graph = new LayoutGraph(edgeList.getNodeCount(), edgeList.getEdgeCount());
+        for (int i = 0; i < edgeList.getNodeCount(); i++)
+            graph.addNode();
+        for (int e = 0; e < edgeList.getEdgeCount(); e++)
+            graph.addEdge(edgeList.getSource(e), edgeList.getTarget(e));
+
+        graph.placeOnCircle(AREA_SIZE / 2, AREA_SIZE / 2, AREA_SIZE / 2);
+        return graph;
+    }
+}
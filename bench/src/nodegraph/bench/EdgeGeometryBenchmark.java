@@ -0,0 +1,109 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import nodegraph.render.EdgeBatch;
+import nodegraph.render.EdgeGeometry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Edge outlines for both edge types, as computed by GraphEdge.update() (one
+ * edge at a time), by SceneGraphView (in a batch) and with the grain dashes
+ * drawn by CanvasGraphView.
+ *
+ * @author elio
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EdgeGeometryBenchmark {
+    private static final double RADIUS = 10;
+    private static final double WIDTH = 4;
+    private static final double GRAIN = 3;
+
+    @Param({"0", "1"})
+    public byte type;
+
+    @Param({"10000"})
+    public int edges;
+
+    private double[] sourceX;
+    private double[] sourceY;
+    private double[] targetX;
+    private double[] targetY;
+    private byte[] directions;
+
+    private final double[] outline = new double[EdgeGeometry.OUTLINE_STRIDE];
+    private double[] dashes;
+    private final EdgeBatch batch = new EdgeBatch();
+
+    @Setup
+    public void setUp () {
+        Random random = new Random(Benchmarks.SEED);
+        sourceX = new double[edges];
+        sourceY = new double[edges];
+        targetX = new double[edges];
+        targetY = new double[edges];
+        directions = new byte[edges];
+
+        for (int e = 0; e < edges; e++) {
+            sourceX[e] = random.nextDouble() * Benchmarks.AREA_SIZE;
+            sourceY[e] = random.nextDouble() * Benchmarks.AREA_SIZE;
+            targetX[e] = random.nextDouble() * Benchmarks.AREA_SIZE;
+            targetY[e] = random.nextDouble() * Benchmarks.AREA_SIZE;
+            directions[e] = (byte)random.nextInt(3);
+        }
+
+        // Enough for the longest possible edge...
+        dashes = new double[4 * ((int)(Benchmarks.AREA_SIZE * 2 / GRAIN) + 1)];
+    }
+
+    @Benchmark
+    public double outline () {
+        double sum = 0;
+        for (int e = 0; e < edges; e++) {
+            int vertices = EdgeGeometry.outline(directions[e], type, sourceX[e], sourceY[e],
+                    targetX[e], targetY[e], RADIUS, WIDTH, outline, 0);
+            sum += outline[vertices * 2 - 1];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double[] batch () {
+        batch.clear();
+        for (int e = 0; e < edges; e++)
+            batch.add(directions[e], sourceX[e], sourceY[e], targetX[e], targetY[e], WIDTH);
+        batch.compute(type, RADIUS);
+        return batch.getOutlines();
+    }
+
+    @Benchmark
+    public int outlineWithGrain () {
+        int total = 0;
+        for (int e = 0; e < edges; e++) {
+            EdgeGeometry.outline(directions[e], type, sourceX[e], sourceY[e],
+                    targetX[e], targetY[e], RADIUS, WIDTH, outline, 0);
+            total += EdgeGeometry.dashes(directions[e], type, outline, 0, GRAIN, dashes, 0);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.bench;
+
+import java.util.Random;
+import nodegraph.io.EdgeList;
+import nodegraph.io.EdgeListParser;
+
+/**
+ * Synthetic graphs, written as edge lists (see EdgeListParser), for
+ * benchmarks. Nodes are labeled n0, n1... and the same type, size and seed
+ * always give the same text. Random graphs leave out nodes which got no
+ * edges.
+ *
+ * @author elio
+ */
+public final class GraphGenerator {
+    public static final String[] TYPES = {"Random", "Scale-free", "Grid", "Star"};
+    public static final byte
+            TYPE_RANDOM = 0,
+            TYPE_SCALE_FREE = 1,
+            TYPE_GRID = 2,
+            TYPE_STAR = 3;
+
+    /**
+     * Edges per node of random graphs, and edges added with every node of
+     * scale-free ones.
+     */
+    public static final int DEGREE = 2;
+
+    private GraphGenerator () {
+    }
+
+    /**
+     * @param type one of the TYPE_* constants.
+     * @param nodes amount of nodes.
+     * @param attributes true for random edge attributes on every edge, false
+     * for none.
+     */
+    public static String generate (byte type, int nodes, long seed, boolean attributes) {
+        StringBuilder out = new StringBuilder(nodes * (attributes ? 64 : 16));
+        generate(type, nodes, seed, attributes, out);
+        return out.toString();
+    }
+
+    public static EdgeList generateEdgeList (byte type, int nodes, long seed, boolean attributes) {
+        return new EdgeListParser().parse(generate(type, nodes, seed, attributes));
+    }
+
+    public static void generate (byte type, int nodes, long seed, boolean attributes, StringBuilder out) {
+        Random random = new Random(seed);
+        nodes = Math.max(nodes, 1);
+
+        switch (type) {
+            case TYPE_RANDOM:
+                // Erdos-Renyi with DEGREE * nodes edges...
+                for (int e = 0; e < DEGREE * nodes; e++)
+                    edge(out, random.nextInt(nodes), random.nextInt(nodes), random, attributes);
+                break;
+            case TYPE_SCALE_FREE:
+                // Barabasi-Albert: new nodes link to existing ones with a
+                // probability proportional to their degree, i.e. to random
+                // endpoints of the edges so far...
+                int[] endpoints = new int[2 * DEGREE * nodes];
+                int endpointCount = 0;
+                line(out, 0);
+                for (int i = 1; i < nodes; i++)
+                    for (int d = 0; d < Math.min(DEGREE, i); d++) {
+                        int j = endpointCount == 0 ? 0 : endpoints[random.nextInt(endpointCount)];
+                        edge(out, i, j, random, attributes);
+                        endpoints[endpointCount++] = i;
+                        endpoints[endpointCount++] = j;
+                    }
+                break;
+            case TYPE_GRID:
+                int side = (int)Math.ceil(Math.sqrt(nodes));
+                for (int i = 0; i < nodes; i++) {
+                    if (i % side + 1 < side && i + 1 < nodes)
+                        edge(out, i, i + 1, random, attributes);
+                    if (i + side < nodes)
+                        edge(out, i, i + side, random, attributes);
+                }
+                if (nodes == 1)
+                    line(out, 0);
+                break;
+            case TYPE_STAR:
+                // A hub linked to every other node...
+                line(out, 0);
+                for (int i = 1; i < nodes; i++)
+                    edge(out, 0, i, random, attributes);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown graph type " + type);
+        }
+    }
+
+    private static void line (StringBuilder out, int node) {
+        out.append('n').append(node).append('\n');
+    }
+
+    private static void edge (StringBuilder out, int source, int target, Random random, boolean attributes) {
+        int direction = random.nextInt(3);
+        out.append('n').append(source)
+                .append(direction == EdgeList.DIRECTION_NONE ? "-" : direction == EdgeList.DIRECTION_ONEWAY ? ">" : "<>")
+                .append('n').append(target);
+
+        if (attributes)
+            for (int a = 0; a < EdgeList.ATTRIBUTES.length; a++)
+                out.append(' ').append(EdgeList.ATTRIBUTES[a]).append('=')
+                        .append(random.nextInt(100) / 100.0);
+
+        out.append('\n');
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.bench;
+
+import java.util.concurrent.TimeUnit;
+import nodegraph.layout.FruchtermanReingold;
+import nodegraph.layout.LayoutGraph;
+import nodegraph.layout.RepulsionKernel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A single FruchtermanReingold iteration. Positions start over from the
+ * circle on every measurement iteration, so they don't drift towards a
+ * converged (and cheaper for Barnes-Hut) layout.
+ *
+ * @author elio
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayoutBenchmark {
+    @Param({"0", "1", "2", "3"})
+    public byte type;
+
+    @Param({"1000", "10000"})
+    public int nodes;
+
+    @Param({"1", "2"})
+    public byte repulsion;
+
+    @Param({"false", "true"})
+    public boolean vector;
+
+    @Param({"1"})
+    public int threads;
+
+    private LayoutGraph graph;
+    private double[] x;
+    private double[] y;
+    private FruchtermanReingold layout;
+
+    @Setup
+    public void setUp () {
+        graph = Benchmarks.layoutGraph(type, nodes);
+        x = new double[graph.getNodeCount()];
+        y = new double[graph.getNodeCount()];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = graph.getX(i);
+            y[i] = graph.getY(i);
+        }
+
+        RepulsionKernel kernel = vector ? RepulsionKernel.loadVector() : new RepulsionKernel.Scalar();
+        if (kernel == null)
+            throw new IllegalStateException("Vector API not available, see RepulsionKernel");
+
+        layout = new FruchtermanReingold(graph, Benchmarks.AREA_SIZE, Benchmarks.AREA_SIZE);
+        layout.setRepulsion(repulsion);
+        layout.setRepulsionKernel(kernel);
+        layout.setParallelism(threads);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPositions () {
+        for (int i = 0; i < x.length; i++)
+            graph.setPosition(i, x[i], y[i]);
+        layout.setTemperature(1);
+    }
+
+    @TearDown
+    public void tearDown () {
+        layout.shutdown();
+    }
+
+    @Benchmark
+    public LayoutGraph step () {
+        layout.step();
+        return graph;
+    }
+}
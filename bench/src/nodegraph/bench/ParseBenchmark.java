@@ -0,0 +1,58 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.bench;
+
+import java.util.concurrent.TimeUnit;
+import nodegraph.io.EdgeList;
+import nodegraph.io.EdgeListParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of edge list text, as done for "Place", with and without
+ * attributes on every edge.
+ *
+ * @author elio
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+    @Param({"0", "1", "2", "3"})
+    public byte type;
+
+    @Param({"1000", "100000"})
+    public int nodes;
+
+    @Param({"false", "true"})
+    public boolean attributes;
+
+    private char[] text;
+
+    @Setup
+    public void setUp () {
+        text = GraphGenerator.generate(type, nodes, Benchmarks.SEED, attributes).toCharArray();
+    }
+
+    @Benchmark
+    public EdgeList parse () {
+        EdgeListParser parser = new EdgeListParser();
+        parser.parse(text, 0, text.length);
+        return parser.getEdgeList();
+    }
+}
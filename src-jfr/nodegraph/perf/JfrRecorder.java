@@ -0,0 +1,81 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.perf;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Instrumentation phases as JFR events, e.g. for:
+ * java -XX:StartFlightRecording=filename=nodegraph.jfr ...
+ * Requires JDK 11+ (jdk.jfr) and is loaded by Instrumentation through
+ * reflection, so the rest of the application still builds and runs on JDK 8.
+ *
+ * Edge updates are too many to record by default, enable
+ * nodegraph.EdgeUpdate in the recording settings to get them.
+ *
+ * @author elio
+ */
+public class JfrRecorder extends Instrumentation.Recorder {
+    @Override
+    public void record (byte phase, long nanos, int items) {
+        if (phase == Instrumentation.PHASE_EDGE_UPDATE) {
+            EdgeUpdateEvent event = new EdgeUpdateEvent();
+            if (event.isEnabled()) {
+                event.elapsed = nanos;
+                event.edges = items;
+                event.commit();
+            }
+        } else {
+            PhaseEvent event = new PhaseEvent();
+            if (event.isEnabled()) {
+                event.phase = Instrumentation.PHASES[phase];
+                event.elapsed = nanos;
+                event.items = items;
+                event.commit();
+            }
+        }
+    }
+
+    @Name("nodegraph.Phase")
+    @Label("Phase")
+    @Category("NodeGraph")
+    @Description("Parsing, layout or rendering of a graph")
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+
+        @Label("Items")
+        @Description("Amount of things done, e.g. lines parsed or edges updated")
+        int items;
+    }
+
+    @Name("nodegraph.EdgeUpdate")
+    @Label("Edge Update")
+    @Category("NodeGraph")
+    @Description("Geometry of one or several edges updated")
+    @StackTrace(false)
+    @Enabled(false)
+    static class EdgeUpdateEvent extends Event {
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+
+        @Label("Edges")
+        int edges;
+    }
+}
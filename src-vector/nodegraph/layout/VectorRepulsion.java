@@ -0,0 +1,89 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.layout;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Exact repulsion with the Vector API, several pairs per instruction
+ * (4 doubles with AVX2, 8 with AVX-512). Requires JDK 16+ and
+ * --add-modules jdk.incubator.vector, both for compiling and running.
+ * Loaded by RepulsionKernel.getDefault() through reflection, so the rest
+ * of the application still builds and runs on JDK 8.
+ *
+ * Lanes are summed in a different order than the scalar kernel, so results
+ * may differ from it by rounding.
+ *
+ * @author elio
+ */
+public class VectorRepulsion extends RepulsionKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void repulsion (double[] x, double[] y, int n, int from, int to, double k2,
+            boolean[] pinned, double[] dx, double[] dy) {
+        DoubleVector vk2 = DoubleVector.broadcast(SPECIES, k2);
+        int bound = SPECIES.loopBound(n);
+
+        for (int i = from; i < to; i++) {
+            if (pinned != null && pinned[i])
+                continue;
+
+            double xi = x[i];
+            double yi = y[i];
+            DoubleVector vxi = DoubleVector.broadcast(SPECIES, xi);
+            DoubleVector vyi = DoubleVector.broadcast(SPECIES, yi);
+            DoubleVector fx = DoubleVector.zero(SPECIES);
+            DoubleVector fy = DoubleVector.zero(SPECIES);
+
+            int j = 0;
+            for (; j < bound; j += SPECIES.length()) {
+                DoubleVector xdiff = vxi.sub(DoubleVector.fromArray(SPECIES, x, j));
+                DoubleVector ydiff = vyi.sub(DoubleVector.fromArray(SPECIES, y, j));
+                DoubleVector dist2 = xdiff.mul(xdiff).add(ydiff.mul(ydiff));
+
+                // Coincident pairs (i == j included) divide by zero, they're
+                // masked out when accumulating...
+                VectorMask<Double> apart = dist2.compare(VectorOperators.GT, 0.0);
+                DoubleVector force = vk2.div(dist2);
+                fx = fx.add(xdiff.mul(force), apart);
+                fy = fy.add(ydiff.mul(force), apart);
+            }
+
+            double sx = fx.reduceLanes(VectorOperators.ADD);
+            double sy = fy.reduceLanes(VectorOperators.ADD);
+
+            // Whatever doesn't fill a vector...
+            for (; j < n; j++) {
+                double xdiff = xi - x[j];
+                double ydiff = yi - y[j];
+                double dist2 = xdiff * xdiff + ydiff * ydiff;
+
+                if (dist2 > 0) {
+                    double force = k2 / dist2;
+                    sx += xdiff * force;
+                    sy += ydiff * force;
+                }
+            }
+
+            dx[i] += sx;
+            dy[i] += sy;
+        }
+    }
+
+    @Override
+    public String getName () {
+        return "Vector (" + SPECIES.length() + " lanes)";
+    }
+
+    @Override
+    protected boolean isSupported () {
+        return SPECIES.length() > 1;
+    }
+}
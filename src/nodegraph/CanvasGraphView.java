@@ -0,0 +1,436 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.value.ObservableValue;
+import javafx.event.EventHandler;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.effect.BoxBlur;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import nodegraph.io.EdgeList;
+import nodegraph.io.EdgeListDiff;
+import nodegraph.render.EdgeGeometry;
+import nodegraph.render.GraphIndex;
+import nodegraph.perf.Instrumentation;
+import nodegraph.render.LevelOfDetail;
+
+/**
+ * Displays a graph by drawing it on a single Canvas, so the amount of
+ * JavaFX nodes doesn't grow with the graph. Edges look like GraphEdges
+ * (tapered, arrowed, grain, color adjustments) and nodes like GraphNodes.
+ * The canvas is redrawn at most once per pulse, only with what's in the
+ * viewport.
+ *
+ * @author elio
+ */
+public class CanvasGraphView implements GraphView {
+    private static final Font LABEL_FONT = Font.font("Verdana", FontWeight.BOLD, 36);
+
+    private final Pane parent;
+    private final Canvas canvas;
+    private final ObservableValue<Color> color;
+    private final Viewport viewport;
+    private byte edgeType;
+
+    private EdgeList edgeList;
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+
+    /**
+     * Edge colors after applying hue and brightness, computed when needed.
+     */
+    private Color[] edgePaints;
+
+    // Buffers for edge outlines and grain dashes...
+    private final double[] outline = new double[EdgeGeometry.OUTLINE_STRIDE];
+    private double[] dashes = new double[64];
+    private final double[] headX = new double[3];
+    private final double[] headY = new double[3];
+
+    private final BoxBlur blur = new BoxBlur();
+
+    /**
+     * Nodes and edges by position, for finding what's in the viewport and
+     * the node being dragged.
+     */
+    private final GraphIndex index = new GraphIndex(GraphNode.RADIUS, EDGE_PADDING);
+    private boolean indexDirty = true;
+    private int dragged = -1;
+
+    private boolean dirty;
+    private final AnimationTimer timer;
+
+    // Drafts are drawn while dragging or animating...
+    private final MotionTracker motion = new MotionTracker();
+
+    /**
+     * @param parent where the graph is displayed.
+     * @param color edge color.
+     * @param viewport zoom and pan of parent.
+     */
+    public CanvasGraphView (Pane parent, ObservableValue<Color> color, Viewport viewport) {
+        this.parent = parent;
+        this.color = color;
+        this.viewport = viewport;
+        canvas = new Canvas();
+        canvas.widthProperty().bind(parent.widthProperty());
+        canvas.heightProperty().bind(parent.heightProperty());
+        blur.setIterations(3);
+
+        InvalidationListener redraw = new InvalidationListener() {
+            @Override
+            public void invalidated(Observable observable) {
+                requestDraw();
+            }
+        };
+        canvas.widthProperty().addListener(redraw);
+        canvas.heightProperty().addListener(redraw);
+        viewport.addListener(redraw);
+        motion.movingProperty().addListener(redraw);
+        color.addListener(new InvalidationListener() {
+            @Override
+            public void invalidated(Observable observable) {
+                edgePaints = null;
+                requestDraw();
+            }
+        });
+
+        timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                // Don't keep requesting pulses while nothing changes...
+                stop();
+                if (dirty) {
+                    dirty = false;
+                    long begin = Instrumentation.begin();
+                    draw();
+                    Instrumentation.end(Instrumentation.PHASE_DRAW, begin,
+                            index.getVisibleNodeCount() + index.getVisibleEdgeCount());
+                }
+            }
+        };
+
+        canvas.setOnMousePressed(new EventHandler<MouseEvent>() {
+            @Override
+            public void handle(MouseEvent event) {
+                if (edgeList == null)
+                    return;
+
+                updateIndex();
+                dragged = index.nodeAt(viewport.toGraphX(event.getX()), viewport.toGraphY(event.getY()));
+
+                // Pressing the background pans instead...
+                if (dragged >= 0)
+                    event.consume();
+            }
+        });
+        canvas.setOnMouseDragged(new EventHandler<MouseEvent>() {
+            @Override
+            public void handle(MouseEvent event) {
+                if (dragged < 0)
+                    return;
+
+                // Only the node and its edges are indexed again, until the drag ends...
+                x[dragged] = viewport.toGraphX(event.getX());
+                y[dragged] = viewport.toGraphY(event.getY());
+                if (!indexDirty)
+                    index.moveNode(edgeList, dragged, x, y);
+                motion.motion();
+                requestDraw();
+                event.consume();
+            }
+        });
+        canvas.setOnMouseReleased(new EventHandler<MouseEvent>() {
+            @Override
+            public void handle(MouseEvent event) {
+                if (dragged >= 0)
+                    indexDirty = true;
+                dragged = -1;
+            }
+        });
+    }
+
+    @Override
+    public void setGraph (EdgeList edgeList) {
+        clear();
+        this.edgeList = edgeList;
+        x = new double[edgeList.getNodeCount()];
+        y = new double[edgeList.getNodeCount()];
+        show();
+    }
+
+    @Override
+    public void updateGraph (EdgeList edgeList, EdgeListDiff diff) {
+        double[] newX = new double[edgeList.getNodeCount()];
+        double[] newY = new double[edgeList.getNodeCount()];
+
+        for (int i = 0; i < newX.length; i++)
+            if (!diff.isCreated(i)) {
+                newX[i] = x[diff.getPreviousNode(i)];
+                newY[i] = y[diff.getPreviousNode(i)];
+            }
+
+        this.edgeList = edgeList;
+        x = newX;
+        y = newY;
+        show();
+    }
+
+    private void show () {
+        edgePaints = null;
+        indexDirty = true;
+        dragged = -1;
+        if (!parent.getChildren().contains(canvas))
+            parent.getChildren().add(canvas);
+        requestDraw();
+    }
+
+    @Override
+    public void setPositions (double[] x, double[] y) {
+        System.arraycopy(x, 0, this.x, 0, this.x.length);
+        System.arraycopy(y, 0, this.y, 0, this.y.length);
+        indexDirty = true;
+        motion.motion();
+        requestDraw();
+    }
+
+    @Override
+    public double getX (int node) {
+        return x[node];
+    }
+
+    @Override
+    public double getY (int node) {
+        return y[node];
+    }
+
+    @Override
+    public void setEdgeType (byte edgeType) {
+        this.edgeType = edgeType;
+        requestDraw();
+    }
+
+    @Override
+    public void clear () {
+        timer.stop();
+        motion.stop();
+        edgeList = null;
+        edgePaints = null;
+        dragged = -1;
+        canvas.getGraphicsContext2D().clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        parent.getChildren().remove(canvas);
+    }
+
+    private void updateIndex () {
+        if (indexDirty) {
+            index.build(edgeList, x, y);
+            indexDirty = false;
+        }
+    }
+
+    /**
+     * Draw again on the next pulse.
+     */
+    private void requestDraw () {
+        dirty = true;
+        if (edgeList != null)
+            timer.start();
+    }
+
+    private void draw () {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (edgeList == null)
+            return;
+
+        if (edgePaints == null)
+            edgePaints = computePaints();
+
+        updateIndex();
+        index.query(viewport.getLeft() - CULL_MARGIN, viewport.getTop() - CULL_MARGIN,
+                viewport.getRight() + CULL_MARGIN, viewport.getBottom() + CULL_MARGIN);
+
+        double zoom = viewport.getZoom();
+        byte detail = LevelOfDetail.choose(zoom, index.getVisibleNodeCount() + index.getVisibleEdgeCount(),
+                motion.isMoving());
+
+        gc.save();
+        gc.translate(viewport.getTranslateX(), viewport.getTranslateY());
+        gc.scale(zoom, zoom);
+        gc.setLineCap(StrokeLineCap.ROUND);
+        gc.setLineJoin(StrokeLineJoin.MITER);
+
+        if (detail == LevelOfDetail.DETAIL_POINTS) {
+            drawPoints(gc, zoom);
+            gc.restore();
+            return;
+        }
+
+        for (int k = 0; k < index.getVisibleEdgeCount(); k++)
+            drawEdge(gc, index.getVisibleEdge(k), detail);
+
+        gc.setEffect(null);
+        gc.setGlobalAlpha(1);
+        gc.setLineWidth(1);
+        gc.setFont(LABEL_FONT);
+        gc.setTextBaseline(VPos.TOP);
+
+        double r = GraphNode.RADIUS;
+        for (int k = 0; k < index.getVisibleNodeCount(); k++) {
+            int i = index.getVisibleNode(k);
+            String label = edgeList.getLabels().getLabel(i);
+            gc.setFill(Color.WHITE);
+            gc.fillOval(x[i] - r, y[i] - r, 2 * r, 2 * r);
+            gc.setStroke(Color.BLACK);
+            gc.strokeOval(x[i] - r, y[i] - r, 2 * r, 2 * r);
+            if (detail <= LevelOfDetail.DETAIL_DRAFT) {
+                gc.setFill(Color.BLACK);
+                gc.fillText(label, x[i] - label.length() * 12, y[i] - 22);
+            }
+        }
+        gc.restore();
+    }
+
+    /**
+     * Draw edges as thin lines of the edge color and nodes as black squares.
+     */
+    private void drawPoints (GraphicsContext gc, double zoom) {
+        gc.setStroke(color.getValue());
+        gc.setLineWidth(LevelOfDetail.POINT_SIZE / zoom);
+        for (int k = 0; k < index.getVisibleEdgeCount(); k++) {
+            int e = index.getVisibleEdge(k);
+            int s = edgeList.getSource(e);
+            int t = edgeList.getTarget(e);
+            gc.strokeLine(x[s], y[s], x[t], y[t]);
+        }
+
+        double r = GraphNode.RADIUS;
+        gc.setFill(Color.BLACK);
+        for (int k = 0; k < index.getVisibleNodeCount(); k++) {
+            int i = index.getVisibleNode(k);
+            gc.fillRect(x[i] - r, y[i] - r, 2 * r, 2 * r);
+        }
+    }
+
+    private void drawEdge (GraphicsContext gc, int e, byte detail) {
+        int s = edgeList.getSource(e);
+        int t = edgeList.getTarget(e);
+        byte direction = edgeList.getDirection(e);
+        double width = GraphEdge.scaledWidth(edgeList.getAttribute(e, EdgeList.ATTR_WIDTH), edgeType);
+        double fuzziness = 0;
+        double grain = 0;
+
+        // Only full detail gets blur and grain...
+        if (detail == LevelOfDetail.DETAIL_FULL) {
+            fuzziness = GraphEdge.scaledFuzziness(1 - edgeList.getAttribute(e, EdgeList.ATTR_FUZZINESS));
+            grain = GraphEdge.scaledGrain(1 - edgeList.getAttribute(e, EdgeList.ATTR_GRAIN));
+        }
+
+        int vertices = EdgeGeometry.outline(direction, edgeType, x[s], y[s], x[t], y[t],
+                GraphNode.RADIUS, width, outline, 0);
+
+        gc.setGlobalAlpha(edgeList.getAttribute(e, EdgeList.ATTR_OPACITY));
+        if (fuzziness > 0) {
+            blur.setWidth(fuzziness);
+            blur.setHeight(fuzziness);
+            gc.setEffect(blur);
+        } else {
+            gc.setEffect(null);
+        }
+        gc.setFill(edgePaints[e]);
+        gc.setStroke(edgePaints[e]);
+        gc.setLineWidth(1);
+
+        if (vertices == EdgeGeometry.LINE_VERTICES) {
+            gc.strokeLine(outline[0], outline[1], outline[2], outline[3]);
+            return;
+        }
+
+        gc.beginPath();
+        gc.moveTo(outline[0], outline[1]);
+        for (int v = 1; v < vertices; v++)
+            gc.lineTo(outline[v * 2], outline[v * 2 + 1]);
+        gc.closePath();
+
+        int count = EdgeGeometry.dashes(direction, edgeType, outline, 0, grain);
+        if (count == 0) {
+            gc.fill();
+            gc.stroke();
+            return;
+        }
+
+        // Grain: only dashes across the edge are visible...
+        if (dashes.length < count * 4)
+            dashes = new double[count * 4];
+        EdgeGeometry.dashes(direction, edgeType, outline, 0, grain, dashes, 0);
+
+        gc.save();
+        gc.clip();
+        gc.setLineWidth(grain);
+        for (int d = 0; d < count; d++)
+            gc.strokeLine(dashes[d * 4], dashes[d * 4 + 1], dashes[d * 4 + 2], dashes[d * 4 + 3]);
+
+        // ... except for the head of the arrow.
+        if (edgeType == EdgeGeometry.TYPE_ARROWED) {
+            for (int v = 0; v < 3; v++) {
+                headX[v] = outline[4 + v * 2];
+                headY[v] = outline[5 + v * 2];
+            }
+            gc.fillPolygon(headX, headY, 3);
+        }
+        gc.restore();
+    }
+
+    /**
+     * @return the color of every edge, as ColorAdjust would render it.
+     */
+    private Color[] computePaints () {
+        Color base = color.getValue();
+        Color[] paints = new Color[edgeList.getEdgeCount()];
+
+        for (int e = 0; e < paints.length; e++) {
+            double hue = GraphEdge.scaledHue(edgeList.getAttribute(e, EdgeList.ATTR_HUE));
+            double brightness = GraphEdge.scaledBrightness(1 - edgeList.getAttribute(e, EdgeList.ATTR_BRIGHTNESS));
+
+            // Edges mostly share attributes, so reuse the previous color when possible...
+            if (e > 0 && hue == GraphEdge.scaledHue(edgeList.getAttribute(e - 1, EdgeList.ATTR_HUE))
+                    && brightness == GraphEdge.scaledBrightness(1 - edgeList.getAttribute(e - 1, EdgeList.ATTR_BRIGHTNESS))) {
+                paints[e] = paints[e - 1];
+                continue;
+            }
+
+            paints[e] = adjust(base, hue, brightness);
+        }
+
+        return paints;
+    }
+
+    /**
+     * @param hue ColorAdjust hue, from -1 to 1 (a full turn).
+     * @param brightness ColorAdjust brightness, from -1 (black) to 1 (white).
+     */
+    static Color adjust (Color base, double hue, double brightness) {
+        Color c = base.deriveColor(hue * 180, 1, 1, 1);
+
+        if (brightness > 0)
+            c = c.interpolate(Color.WHITE, brightness);
+        else if (brightness < 0)
+            c = c.interpolate(Color.BLACK, -brightness);
+
+        return c;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph;
+
+import java.util.HashMap;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.scene.effect.BoxBlur;
+import javafx.scene.effect.ColorAdjust;
+import javafx.scene.paint.Color;
+
+/**
+ * Hue, brightness, opacity and fuzziness of an edge, with the effects
+ * rendering them. Edges with equal attributes share one style (see
+ * intern()), so there are only as many effects as attribute combinations.
+ * The base color is shared by every style of a Cache.
+ * Values are already scaled, see GraphEdge.scaledHue() and the like.
+ *
+ * @author elio
+ */
+public class EdgeStyle {
+    private final double hue;
+    private final double brightness;
+    private final double opacity;
+    private final double fuzziness;
+    private final ObjectProperty<Color> color;
+
+    // Created once the style is interned...
+    private ColorAdjust colorAdjust;
+    private BoxBlur blur;
+
+    private EdgeStyle (double hue, double brightness, double opacity, double fuzziness,
+            ObjectProperty<Color> color) {
+        this.hue = hue;
+        this.brightness = brightness;
+        this.opacity = opacity;
+        this.fuzziness = fuzziness;
+        this.color = color;
+    }
+
+    public double getHue () {
+        return hue;
+    }
+
+    public double getBrightness () {
+        return brightness;
+    }
+
+    public double getOpacity () {
+        return opacity;
+    }
+
+    public double getFuzziness () {
+        return fuzziness;
+    }
+
+    /**
+     * @return the base color edges are painted with, the same for every
+     * style of the cache this one comes from.
+     */
+    public ObjectProperty<Color> colorProperty () {
+        return color;
+    }
+
+    /**
+     * @return the effect adjusting the edge color, shared by every edge
+     * with this style.
+     */
+    public ColorAdjust getColorAdjust () {
+        return colorAdjust;
+    }
+
+    /**
+     * @return the blur shared by every edge with this style, or null if
+     * there's no fuzziness.
+     */
+    public BoxBlur getBlur () {
+        return blur;
+    }
+
+    @Override
+    public boolean equals (Object o) {
+        if (!(o instanceof EdgeStyle))
+            return false;
+
+        EdgeStyle style = (EdgeStyle)o;
+        return hue == style.hue && brightness == style.brightness
+                && opacity == style.opacity && fuzziness == style.fuzziness;
+    }
+
+    @Override
+    public int hashCode () {
+        long h = Double.doubleToLongBits(hue);
+        h = 31 * h + Double.doubleToLongBits(brightness);
+        h = 31 * h + Double.doubleToLongBits(opacity);
+        h = 31 * h + Double.doubleToLongBits(fuzziness);
+        return (int)(h ^ (h >>> 32));
+    }
+
+    /**
+     * Interned styles, to be dropped together when no edge uses them anymore.
+     */
+    public static class Cache {
+        private final HashMap<EdgeStyle, EdgeStyle> styles = new HashMap<>();
+        private final ObjectProperty<Color> color = new SimpleObjectProperty<>(Color.BLACK);
+
+        /**
+         * @return the style with the given (scaled) values, created the
+         * first time they're asked for.
+         */
+        public EdgeStyle intern (double hue, double brightness, double opacity, double fuzziness) {
+            EdgeStyle key = new EdgeStyle(hue, brightness, opacity, fuzziness, color);
+            EdgeStyle style = styles.get(key);
+            if (style != null)
+                return style;
+
+            key.colorAdjust = new ColorAdjust();
+            key.colorAdjust.setHue(hue);
+            key.colorAdjust.setBrightness(brightness);
+
+            if (fuzziness > 0)
+                key.blur = new BoxBlur(fuzziness, fuzziness, 3);
+
+            styles.put(key, key);
+            return key;
+        }
+
+        /**
+         * @return the base color of every style, which edges are bound to.
+         */
+        public ObjectProperty<Color> colorProperty () {
+            return color;
+        }
+
+        /**
+         * @return the amount of distinct styles.
+         */
+        public int size () {
+            return styles.size();
+        }
+
+        public void clear () {
+            styles.clear();
+        }
+    }
+}
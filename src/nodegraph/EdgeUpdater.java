@@ -0,0 +1,57 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph;
+
+import java.util.ArrayList;
+import javafx.animation.AnimationTimer;
+
+/**
+ * Collects edges which need to be updated and updates them once per pulse,
+ * no matter how many times they were invalidated in between (e.g. by mouse
+ * events while dragging a node).
+ *
+ * @author elio
+ */
+public class EdgeUpdater {
+    private final ArrayList<GraphEdge> dirtyEdges = new ArrayList<>();
+    private final AnimationTimer timer;
+
+    public EdgeUpdater () {
+        timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                flush();
+
+                // Don't keep requesting pulses while nothing changes...
+                if (dirtyEdges.isEmpty())
+                    stop();
+            }
+        };
+    }
+
+    /**
+     * Update the given edge on the next pulse.
+     */
+    public void invalidate (GraphEdge edge) {
+        if (edge.isDirty())
+            return;
+
+        edge.setDirty(true);
+        dirtyEdges.add(edge);
+        timer.start();
+    }
+
+    /**
+     * Update every invalidated edge now.
+     */
+    public void flush () {
+        for (GraphEdge edge : dirtyEdges) {
+            edge.setDirty(false);
+            edge.update();
+        }
+        dirtyEdges.clear();
+    }
+}
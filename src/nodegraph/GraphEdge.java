@@ -5,20 +5,21 @@
  */
 package nodegraph;
 
-import javafx.beans.property.ObjectProperty;
-import javafx.beans.property.SimpleObjectProperty;
-import javafx.geometry.Point2D;
+import javafx.collections.ObservableList;
 import javafx.scene.Group;
-import javafx.scene.effect.BoxBlur;
-import javafx.scene.effect.ColorAdjust;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.ClosePath;
 import javafx.scene.shape.Line;
 import javafx.scene.shape.LineTo;
 import javafx.scene.shape.MoveTo;
 import javafx.scene.shape.Path;
+import javafx.scene.shape.PathElement;
 import javafx.scene.shape.StrokeLineCap;
 import javafx.scene.shape.StrokeLineJoin;
+import nodegraph.perf.Instrumentation;
+import nodegraph.render.EdgeAttributes;
+import nodegraph.render.EdgeGeometry;
+import nodegraph.render.LevelOfDetail;
 
 /**
  *
@@ -27,43 +28,32 @@ import javafx.scene.shape.StrokeLineJoin;
 public class GraphEdge {
     public static final String[] TYPES = {"Tapered", "Arrowed"};
     public static final byte 
-            TYPE_TAPERED = 0,
-            TYPE_ARROWED = 1;
+            TYPE_TAPERED = EdgeGeometry.TYPE_TAPERED,
+            TYPE_ARROWED = EdgeGeometry.TYPE_ARROWED;
     
     public static final byte 
-            DIRECTION_NONE = 0,
-            DIRECTION_ONEWAY = 1,
-            DIRECTION_BOTHWAYS = 2;
+            DIRECTION_NONE = EdgeGeometry.DIRECTION_NONE,
+            DIRECTION_ONEWAY = EdgeGeometry.DIRECTION_ONEWAY,
+            DIRECTION_BOTHWAYS = EdgeGeometry.DIRECTION_BOTHWAYS;
     
     private static final double 
-            MINIMUM_ARROWED_WIDTH = 2.0,
-            MAXIMUM_ARROWED_WIDTH = GraphNode.RADIUS * 2.0,
-            
-            MINIMUM_TAPERED_WIDTH = GraphNode.RADIUS * 0.2,
-            MAXIMUM_TAPERED_WIDTH = GraphNode.RADIUS * 2,
-            
-            MINIMUN_HUE = 0.333,              // = ~170
-            MAXIMUM_HUE = 0.694,              // = ~216
-            
-            MAXIMUM_BRIGHTNESS = 0.9,
-            
-            HUE_MULTIPLIER = MAXIMUM_HUE - MINIMUN_HUE,
-            TAPERED_WIDTH_MULTIPLIER = MAXIMUM_TAPERED_WIDTH - MINIMUM_TAPERED_WIDTH,
-            ARROWED_WIDTH_MULTIPLIER = MAXIMUM_ARROWED_WIDTH - MINIMUM_ARROWED_WIDTH,
-            BRIGHTNESS_MULTIPLIER = MAXIMUM_BRIGHTNESS,
-            GRAIN_MULTIPLIER = 40,
-            FUZZINESS_MULTIPLIER = 25,
-            
-            ARROW_HEAD_OPENNESS = 10,
-            ARROW_HEAD_SIZE = 30;
+            ARROW_HEAD_OPENNESS = EdgeGeometry.ARROW_HEAD_OPENNESS,
+            ARROW_HEAD_SIZE = EdgeGeometry.ARROW_HEAD_SIZE;
     
     public static final double 
-            DEFAULT_ARROW_WIDTH = 0.1,
-            DEFAULT_TAPERED_WIDTH = 0.5;
+            DEFAULT_ARROW_WIDTH = EdgeAttributes.DEFAULT_ARROW_WIDTH,
+            DEFAULT_TAPERED_WIDTH = EdgeAttributes.DEFAULT_TAPERED_WIDTH;
     
     private GraphNode source;
     private GraphNode target;
     
+    /**
+     * Where this edge is in the outbound edges of source and the inbound
+     * edges of target, see GraphNode.removeOutboundEdge().
+     */
+    private int sourceSlot;
+    private int targetSlot;
+    
     /**
      * Edge direction.
      * E.g. none, one way, both ways.
@@ -102,25 +92,48 @@ public class GraphEdge {
     private final Path path;
     
     /**
-     * Represents a helper object with which we create the grain effect.
+     * Path elements, reused on every update. Only the first vertexCount
+     * ones (and closePath, unless it's a line) are in the path.
      */
-    private final Group grainGroup;
+    private final MoveTo moveTo = new MoveTo();
+    private final LineTo[] lineTos = new LineTo[EdgeGeometry.ARROW_VERTICES - 1];
+    private final ClosePath closePath = new ClosePath();
+    private int vertexCount;
     
     /**
-     * Edge color.
+     * One of LevelOfDetail.DETAIL_*, and the width of the plain line drawn
+     * instead of the edge at point detail.
      */
-    private final ObjectProperty<Color> color = new SimpleObjectProperty();
+    private byte detail = LevelOfDetail.DETAIL_FULL;
+    private double lineWidth = 1.0;
     
     /**
-     * Edge color adjustments.
-     * With it we handle color effects such as brightness, hue, opacity, etc.
+     * True while waiting for an EdgeUpdater to update this edge.
+     */
+    private boolean dirty;
+    
+    /**
+     * Outline buffer, see EdgeGeometry.outline().
+     */
+    private final double[] outline = new double[EdgeGeometry.OUTLINE_STRIDE];
+    
+    /**
+     * Represents a helper object with which we create the grain effect.
+     * It clips the path with a dashed line along the edge, plus the head of
+     * the arrow (if any), so it never needs more than these two shapes.
      */
-    private final ColorAdjust colorAdjust;
+    private final Group grainGroup;
+    private final Line grainLine;
+    private final Path grainHead;
+    private final MoveTo grainHeadTip = new MoveTo();
+    private final LineTo grainHeadA = new LineTo();
+    private final LineTo grainHeadB = new LineTo();
     
     /**
-     * Blur or fuzziness edge effect.
+     * Edge color, its adjustments, opacity and blur, shared with other edges.
+     * With it we handle color effects such as brightness, hue, opacity, etc.
      */
-    private final BoxBlur blur;
+    private EdgeStyle style;
     
     public GraphEdge (GraphNode fromNode, GraphNode toNode, byte edgeType, byte direction) {
         this.source = fromNode;
@@ -132,18 +145,20 @@ public class GraphEdge {
         grain = 0.0;
         edgeGroup = new Group();
         path = new Path();
-        grainGroup = new Group();
-        colorAdjust = new ColorAdjust();
-        blur = new BoxBlur();
+        grainLine = new Line();
+        grainLine.setStroke(Color.WHITE);
+        grainLine.setStrokeLineCap(StrokeLineCap.BUTT);
+        grainHead = new Path(grainHeadTip, grainHeadA, grainHeadB, new ClosePath());
+        grainHead.setFill(Color.WHITE);
+        grainHead.setStroke(Color.WHITE);
+        grainGroup = new Group(grainLine, grainHead);
+        for (int i = 0; i < lineTos.length; i++)
+            lineTos[i] = new LineTo();
         
-        path.strokeProperty().bind(color);
-        path.fillProperty().bind(color);
-        path.setEffect(colorAdjust);
         path.setStrokeLineJoin(StrokeLineJoin.MITER);
         path.setStrokeLineCap(StrokeLineCap.ROUND);
         
-        blur.setIterations(3);
-        edgeGroup.setEffect(blur);
+        updateEffects();
         
         edgeGroup.getChildren().add(path);
     }
@@ -152,212 +167,216 @@ public class GraphEdge {
      * Update the edge with the established features and the nodes current position.
      */
     public void update () {
-        double targetOffSet = GraphNode.RADIUS;
-        
-        Point2D sourcePos = source.getPosition();
-        Point2D targetPos = newPointInLine(target.getPosition(), sourcePos, targetOffSet);
-        path.getElements().clear();
-        
-        if (direction == DIRECTION_NONE) {
-            path.getElements().add(new MoveTo(sourcePos.getX(), sourcePos.getY()));
-            path.getElements().add(new LineTo(targetPos.getX(), targetPos.getY()));
-        } else {
-            switch (edgeType) {
-                case TYPE_ARROWED:
-                    createArrow(sourcePos, targetPos);
-                    break;
-                case TYPE_TAPERED:
-                    createTapered(sourcePos, targetPos);
-            }
-        }
+        update(source.getX(), source.getY(), target.getX(), target.getY());
     }
     
     /**
-     * Create an arrowed edge from sourcePos to targetPost.
+     * Update the edge with the established features and the given node positions.
+     * Nothing is allocated, see EdgeGeometry.
      */
-    private void createArrow (Point2D sourcePos, Point2D targetPos) {
-        // Reference position used for creating the head of the arrow...
-        Point2D refPos = new Point2D(targetPos.getX() + 10, targetPos.getY());
-        double arrowWidth = getWidth() / 2;
-        double angle = targetPos.angle(sourcePos, refPos) * Math.PI / 180;
+    public void update (double sourceX, double sourceY, double targetX, double targetY) {
+        long begin = Instrumentation.begin();
+        int count = EdgeGeometry.outline(getOutlineDirection(), edgeType, sourceX, sourceY, targetX, targetY,
+                GraphNode.RADIUS, getWidth(), outline, 0);
+        setOutline(outline, 0, count);
+        Instrumentation.end(Instrumentation.PHASE_EDGE_UPDATE, begin, 1);
+    }
+    
+    /**
+     * @return the direction to compute the outline for: at point detail
+     * every edge is a plain line.
+     */
+    public byte getOutlineDirection () {
+        return detail == LevelOfDetail.DETAIL_POINTS ? DIRECTION_NONE : direction;
+    }
+    
+    /**
+     * Display an outline computed by EdgeGeometry (e.g. in a batch for many
+     * edges), for getOutlineDirection(), the edge type and getWidth().
+     */
+    public void setOutline (double[] vertices, int offset, int count) {
+        path.setStrokeWidth(detail == LevelOfDetail.DETAIL_POINTS ? lineWidth : 1.0);
+        setVertexCount(count);
+        for (int i = 0; i < count; i++)
+            setVertex(i, vertices[offset + i * 2], vertices[offset + i * 2 + 1]);
         
-        angle = targetPos.getY() <= sourcePos.getY() ? (Math.PI / 2) + angle : (Math.PI / 2) - angle;
-        refPos = newPointInLine(targetPos, sourcePos, ARROW_HEAD_SIZE);
+        updateGrain(vertices, offset, count);
+    }
+    
+    /**
+     * Clip the edge with dashes across it when there is grain.
+     * The clip is a single dashed line, as wide as the edge and its arrow
+     * head, whose dashes are one grain long and centered two, four... grains
+     * away from the source. The arrow head is always fully visible.
+     */
+    private void updateGrain (double[] vertices, int offset, int count) {
+        if (grain <= 0.0 || count == EdgeGeometry.LINE_VERTICES || detail != LevelOfDetail.DETAIL_FULL) {
+            path.setClip(null);
+            return;
+        }
         
-        // Stick points at the source...
-        Point2D sourceA = new Point2D(
-                sourcePos.getX() + arrowWidth * Math.cos(angle), 
-                sourcePos.getY() + arrowWidth * Math.sin(angle));
-        Point2D sourceB = new Point2D(
-                sourcePos.getX() + arrowWidth * Math.cos(Math.PI + angle), 
-                sourcePos.getY() + arrowWidth * Math.sin(Math.PI + angle));
-
-        // Stick points at the beginning of the arrow head...
-        Point2D targetA = new Point2D(
-                refPos.getX() + arrowWidth * Math.cos(angle), 
-                refPos.getY() + arrowWidth * Math.sin(angle));
-        Point2D targetB = new Point2D(
-                refPos.getX() + arrowWidth * Math.cos(Math.PI + angle), 
-                refPos.getY() + arrowWidth * Math.sin(Math.PI + angle));
-
-        // Arrow head side points...
-        Point2D arrowA = new Point2D(
-                refPos.getX() + (ARROW_HEAD_OPENNESS + arrowWidth) * Math.cos(angle), 
-                refPos.getY() + (ARROW_HEAD_OPENNESS + arrowWidth) * Math.sin(angle));
-
-        Point2D arrowB = new Point2D(
-                refPos.getX() + (ARROW_HEAD_OPENNESS + arrowWidth)  * Math.cos(Math.PI + angle), 
-                refPos.getY() + (ARROW_HEAD_OPENNESS + arrowWidth) * Math.sin(Math.PI + angle));
+        // Source between both source vertices (first and last for arrows,
+        // first and second for tapered edges), then the tip...
+        int sourceB = offset + (count == EdgeGeometry.ARROW_VERTICES ? (count - 1) * 2 : 2);
+        int tip = offset + (count == EdgeGeometry.ARROW_VERTICES ? 6 : 4);
+        double startX = (vertices[offset] + vertices[sourceB]) / 2;
+        double startY = (vertices[offset + 1] + vertices[sourceB + 1]) / 2;
+        double dx = vertices[tip] - startX;
+        double dy = vertices[tip + 1] - startY;
+        double length = Math.sqrt(dx * dx + dy * dy);
         
-        // Draw arrow...
-        path.getElements().addAll(
-                new MoveTo(sourceA.getX(), sourceA.getY()),
-                new LineTo(targetA.getX(), targetA.getY()),
-                
-                new LineTo(arrowA.getX(), arrowA.getY()),
-                new LineTo(targetPos.getX(), targetPos.getY()),
-                new LineTo(arrowB.getX(), arrowB.getY()),
-                
-                new LineTo(targetB.getX(), targetB.getY()),
-                new LineTo(sourceB.getX(), sourceB.getY()),
-
-                new ClosePath()
-        );
+        // ... moved to where the first dash begins, one and a half grains
+        // away, so dashes are centered every two grains as in EdgeGeometry.dashes().
+        double shift = length > 0 ? Math.min(1.5 * grain, length) / length : 0;
+        grainLine.setStartX(startX + dx * shift);
+        grainLine.setStartY(startY + dy * shift);
+        grainLine.setEndX(vertices[tip]);
+        grainLine.setEndY(vertices[tip + 1]);
+        grainLine.setStrokeWidth(getWidth() + ARROW_HEAD_OPENNESS * 2);
         
-        // Create grain effect when there is one...
-        if (grain > 0.0) {
-            grainGroup.getChildren().clear();
-            // Spaces between each dash...
-            double dashPadding = grain * 2;
-            
-            // Here we place white lines that cut the edge perpendicularlly.
-            while (sourceA.distance(arrowA) >= grain) {
-                sourceA = newPointInLine(sourceA, arrowA, dashPadding);
-                sourceB = newPointInLine(sourceB, arrowB, dashPadding);
-
-                Line l = new Line(sourceA.getX(), sourceA.getY(), sourceB.getX(), sourceB.getY());
-                l.setStroke(Color.WHITE);
-                l.setStrokeWidth(grain);
-                grainGroup.getChildren().add(l);
-            }
-            
-            // A replica of the head of the arrow is added so that the actual head
-            // won't dissapear when using "clip"
-            Path arrowHead = new Path(
-                    new MoveTo(targetPos.getX(), targetPos.getY()),
-                    new LineTo(arrowA.getX(), arrowA.getY()),
-                    new LineTo(arrowB.getX(), arrowB.getY()),
-                    new ClosePath()
-            );
-            arrowHead.setFill(Color.WHITE);
-            arrowHead.setStroke(Color.WHITE);
-            
-            grainGroup.getChildren().add(arrowHead);
-            path.setClip(grainGroup);
+        grainHead.setVisible(edgeType == TYPE_ARROWED);
+        if (edgeType == TYPE_ARROWED) {
+            // Tip and head sides, see EdgeGeometry.outline()...
+            grainHeadTip.setX(lineTos[2].getX());
+            grainHeadTip.setY(lineTos[2].getY());
+            grainHeadA.setX(lineTos[1].getX());
+            grainHeadA.setY(lineTos[1].getY());
+            grainHeadB.setX(lineTos[3].getX());
+            grainHeadB.setY(lineTos[3].getY());
         }
+        
+        path.setClip(grainGroup);
     }
     
-    private void createTapered (Point2D sourcePos, Point2D targetPos) {
-        // Reference position used for establishing the source points of the triangle.
-        Point2D refPos = new Point2D(targetPos.getX() + 10, targetPos.getY());
-        // Triangle openness based on the given with.
-        double openness = getWidth() / 2;
-        double angle = targetPos.angle(sourcePos, refPos) * Math.PI / 180;
-        angle = targetPos.getY() <= sourcePos.getY() ? (Math.PI / 2) + angle : (Math.PI / 2) - angle;
-
-        Point2D sourceA = new Point2D(
-                sourcePos.getX() + openness * Math.cos(Math.PI + angle), 
-                sourcePos.getY() + openness * Math.sin(Math.PI + angle));
-        Point2D sourceB = new Point2D(
-                sourcePos.getX() + openness * Math.cos(angle), 
-                sourcePos.getY() + openness * Math.sin(angle));
-        
-        path.getElements().addAll(
-                new MoveTo(sourceA.getX(), sourceA.getY()),
-                new LineTo(sourceB.getX(), sourceB.getY()),
-                new LineTo(targetPos.getX(), targetPos.getY()),
-                new ClosePath()
-        );
-        
-        path.setStrokeWidth(1.0);
+    /**
+     * Make the path have the given amount of vertices, closing it unless
+     * it's a line. Elements are only added or removed when the amount changes.
+     */
+    private void setVertexCount (int count) {
+        if (count == vertexCount)
+            return;
         
-        if (grain > 0.0) {
-            double grainPadding = grain * 2;
-            grainGroup.getChildren().clear();
-            
-            // Here we place white lines that cut the edge perpendicularlly.
-            while (sourceA.distance(targetPos) >= grain) {
-                sourceA = newPointInLine(sourceA, targetPos, grainPadding);
-                sourceB = newPointInLine(sourceB, targetPos, grainPadding);
-
-                Line l = new Line(sourceA.getX(), sourceA.getY(), sourceB.getX(), sourceB.getY());
-                l.setStroke(Color.WHITE);
-                l.setStrokeWidth(grain);
-                grainGroup.getChildren().add(l);
-            }
-            
-            path.setClip(grainGroup);
+        ObservableList<PathElement> elements = path.getElements();
+        elements.clear();
+        elements.add(moveTo);
+        for (int i = 0; i < count - 1; i++)
+            elements.add(lineTos[i]);
+        if (count > EdgeGeometry.LINE_VERTICES)
+            elements.add(closePath);
+        vertexCount = count;
+    }
+    
+    private void setVertex (int i, double x, double y) {
+        if (i == 0) {
+            moveTo.setX(x);
+            moveTo.setY(y);
+        } else {
+            lineTos[i - 1].setX(x);
+            lineTos[i - 1].setY(y);
         }
     }
     
-    /** Returns a new position based on the line drawn between p1 and p2.
-     * @param p1 is the moving point e.i. the one moving towards or away p2.
-     * @param p2 is the reference point e.i. the one from which p1 will move towards or away from.
-     * @param stepSize distance to move towards or away.
-     * @param getAway true if p1 is to move away from p2, false otherwise.
+    /**
+     * @return the actual width, which depends on the edge type.
      */
-    private Point2D newPointInLine(Point2D p1, Point2D p2, double stepSize){
-        double dx = p2.getX() - p1.getX();
-        double dy = p2.getY() - p1.getY();
-        
-        double mag = Math.sqrt( Math.pow(dx, 2) + Math.pow(dy, 2));
-        
-        double x = p1.getX() + dx * stepSize / mag;
-        double y = p1.getY() + dy * stepSize / mag;
-        
-        return new Point2D(x, y);
+    public double getWidth () {
+        return scaledWidth(width, edgeType);
     }
     
-    private double getWidth () {
-        double w = this.width;
-        
-        if (w < 0.0 || w > 1)
-            if (edgeType == TYPE_ARROWED)
-                w = DEFAULT_ARROW_WIDTH;
-            else
-                w = DEFAULT_TAPERED_WIDTH;
-        
-        if (edgeType == TYPE_ARROWED)
-            return w * ARROWED_WIDTH_MULTIPLIER + MINIMUM_ARROWED_WIDTH;
-        
-        return w * TAPERED_WIDTH_MULTIPLIER + MINIMUM_TAPERED_WIDTH;
+    /**
+     * @see EdgeAttributes#scaledWidth(double, byte)
+     */
+    public static double scaledWidth (double w, byte edgeType) {
+        return EdgeAttributes.scaledWidth(w, edgeType);
+    }
+    
+    public static double scaledHue (double h) {
+        return EdgeAttributes.scaledHue(h);
+    }
+    
+    public static double scaledBrightness (double b) {
+        return EdgeAttributes.scaledBrightness(b);
+    }
+    
+    public static double scaledFuzziness (double f) {
+        return EdgeAttributes.scaledFuzziness(f);
+    }
+    
+    public static double scaledGrain (double g) {
+        return EdgeAttributes.scaledGrain(g);
     }
     
     public void setWidth (double width) {
         this.width = width;
     }
     
-    public void setHue (double h) {
-        colorAdjust.setHue(h * HUE_MULTIPLIER);
+    /**
+     * @param style hue, brightness, opacity and fuzziness, see EdgeStyle.Cache.
+     */
+    public void setStyle (EdgeStyle style) {
+        this.style = style;
+        path.strokeProperty().bind(style.colorProperty());
+        path.fillProperty().bind(style.colorProperty());
+        path.setOpacity(style.getOpacity());
+        updateEffects();
+    }
+    
+    public EdgeStyle getStyle () {
+        return style;
     }
     
-    public void setOpacity (double o) {
-        path.setOpacity(o);
+    /**
+     * Draw the edge with less detail, see LevelOfDetail. Takes effect on the
+     * next update.
+     * @param zoom current zoom, for keeping lines thin on screen.
+     */
+    public void setDetail (byte detail, double zoom) {
+        this.detail = detail;
+        this.lineWidth = LevelOfDetail.POINT_SIZE / zoom;
+        updateEffects();
     }
     
-    public void setFuzziness (double f) {
-        f *= FUZZINESS_MULTIPLIER;
-        blur.setHeight(f);
-        blur.setWidth(f);
+    public byte getDetail () {
+        return detail;
+    }
+    
+    /**
+     * Only full detail gets blur (when there is any), and only point detail
+     * goes without color adjustments.
+     */
+    private void updateEffects () {
+        if (style == null) {
+            path.setEffect(null);
+            edgeGroup.setEffect(null);
+            return;
+        }
+        
+        path.setEffect(detail == LevelOfDetail.DETAIL_POINTS ? null : style.getColorAdjust());
+        edgeGroup.setEffect(detail == LevelOfDetail.DETAIL_FULL ? style.getBlur() : null);
     }
     
-    public void setBrightness (double b) {
-        // the less significance the brighter...
-        colorAdjust.setBrightness(b * BRIGHTNESS_MULTIPLIER);
+    boolean isDirty () {
+        return dirty;
     }
     
-    public ObjectProperty getColorProperty () {
-        return color;
+    void setDirty (boolean dirty) {
+        this.dirty = dirty;
+    }
+    
+    int getSourceSlot () {
+        return sourceSlot;
+    }
+    
+    void setSourceSlot (int sourceSlot) {
+        this.sourceSlot = sourceSlot;
+    }
+    
+    int getTargetSlot () {
+        return targetSlot;
+    }
+    
+    void setTargetSlot (int targetSlot) {
+        this.targetSlot = targetSlot;
     }
     
     /**
@@ -438,6 +457,13 @@ public class GraphEdge {
      * @param grain the grain to set
      */
     public void setGrain(double grain) {
-        this.grain = grain * GRAIN_MULTIPLIER;
+        this.grain = scaledGrain(grain);
+        
+        // Dashes of one grain every two grains, from the start of the clip
+        // line, which updateGrain() puts where the first dash begins...
+        if (this.grain > 0.0) {
+            grainLine.getStrokeDashArray().setAll(this.grain, this.grain);
+            grainLine.setStrokeDashOffset(0);
+        }
     }
 }
@@ -15,14 +15,15 @@ import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import nodegraph.render.EdgeAttributes;
+import nodegraph.render.LevelOfDetail;
 
 /**
  *
  * @author elio
  */
 public class GraphNode {
-    public static final double RADIUS = 30;
-    private static final double X_OFFSET = 200;
+    public static final double RADIUS = EdgeAttributes.NODE_RADIUS;
     
     private int id;
     private String name;
@@ -32,15 +33,19 @@ public class GraphNode {
     private ArrayList<GraphEdge> inboundEdges;
     private ArrayList<GraphEdge> outboundEdges;
     
-    // Auxiliar variables for fruchtermanReingold algorithm...
-    public double dx;
-    public double dy;
+    /**
+     * Updates edges while dragging, if null they're updated on every event.
+     */
+    private final EdgeUpdater edgeUpdater;
     
     public GraphNode (int id, String name) {
+        this(id, name, null);
+    }
+    
+    public GraphNode (int id, String name, EdgeUpdater edgeUpdater) {
         this.id = id;
         this.name = name;
-        dx = 0.0;
-        dy = 0.0;
+        this.edgeUpdater = edgeUpdater;
         
         inboundEdges = new ArrayList<>();
         outboundEdges = new ArrayList<>();
@@ -48,30 +53,60 @@ public class GraphNode {
         circle = new Circle(RADIUS);
         circle.setFill(Color.WHITE);
         circle.setStroke(Color.BLACK);
-        label = new Label(name);
-        label.setTranslateX(-name.length()*12);
+        label = new Label();
+        setLabel(name);
         label.setTranslateY(-22);
         label.setFont(Font.font("Verdana", FontWeight.BOLD, 36));
         
         body = new Group(circle, label);
         
+        // Consumed so that dragging a node doesn't pan the view...
+        body.setOnMousePressed(new EventHandler<MouseEvent>() {
+            @Override
+            public void handle(MouseEvent event) {
+                event.consume();
+            }
+        });
         body.setOnMouseDragged(new EventHandler<MouseEvent>() {
             @Override
             public void handle(MouseEvent event) {
-                body.setTranslateX(event.getSceneX() - X_OFFSET);
-                body.setTranslateY(event.getSceneY());
+                // Graph coordinates, whatever the zoom and pan are...
+                Point2D position = body.getParent().sceneToLocal(event.getSceneX(), event.getSceneY());
+                body.setTranslateX(position.getX());
+                body.setTranslateY(position.getY());
+                event.consume();
                 
                 for (GraphEdge e : inboundEdges)
-                    e.update();
+                    updateEdge(e);
                 for (GraphEdge e : outboundEdges)
-                    e.update();
+                    updateEdge(e);
             }
         });
     }
     
+    /**
+     * Draw the node with less detail, see LevelOfDetail.
+     */
+    public void setDetail (byte detail) {
+        label.setVisible(detail <= LevelOfDetail.DETAIL_DRAFT);
+        
+        if (detail == LevelOfDetail.DETAIL_POINTS) {
+            circle.setFill(Color.BLACK);
+            circle.setStroke(null);
+        } else {
+            circle.setFill(Color.WHITE);
+            circle.setStroke(Color.BLACK);
+        }
+    }
+    
+    private void updateEdge (GraphEdge edge) {
+        if (edgeUpdater == null)
+            edge.update();
+        else
+            edgeUpdater.invalidate(edge);
+    }
+    
     public void setPosition (double x, double y) {
-        dx = x;
-        dy = y;
         body.setTranslateX(x);
         body.setTranslateY(y);
     }
@@ -80,6 +115,14 @@ public class GraphNode {
         return new Point2D(body.getTranslateX(), body.getTranslateY());
     }
     
+    public double getX () {
+        return body.getTranslateX();
+    }
+    
+    public double getY () {
+        return body.getTranslateY();
+    }
+    
     /**
      * @return the id
      */
@@ -106,6 +149,8 @@ public class GraphNode {
      */
     public void setLabel(String label) {
         this.name = label;
+        this.label.setText(label);
+        this.label.setTranslateX(-label.length()*12);
     }
 
     /**
@@ -149,4 +194,38 @@ public class GraphNode {
     public void setOutboundEdges(ArrayList<GraphEdge> outboundEdges) {
         this.outboundEdges = outboundEdges;
     }
+    
+    /**
+     * Add an edge leaving this node, keeping its slot so it can be removed
+     * in constant time.
+     */
+    void addOutboundEdge (GraphEdge edge) {
+        edge.setSourceSlot(outboundEdges.size());
+        outboundEdges.add(edge);
+    }
+    
+    /**
+     * Remove an edge added by addOutboundEdge(), moving the last one to its
+     * slot.
+     */
+    void removeOutboundEdge (GraphEdge edge) {
+        GraphEdge last = outboundEdges.remove(outboundEdges.size() - 1);
+        if (last != edge) {
+            outboundEdges.set(edge.getSourceSlot(), last);
+            last.setSourceSlot(edge.getSourceSlot());
+        }
+    }
+    
+    void addInboundEdge (GraphEdge edge) {
+        edge.setTargetSlot(inboundEdges.size());
+        inboundEdges.add(edge);
+    }
+    
+    void removeInboundEdge (GraphEdge edge) {
+        GraphEdge last = inboundEdges.remove(inboundEdges.size() - 1);
+        if (last != edge) {
+            inboundEdges.set(edge.getTargetSlot(), last);
+            last.setTargetSlot(edge.getTargetSlot());
+        }
+    }
 }
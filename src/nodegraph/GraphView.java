@@ -0,0 +1,59 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph;
+
+import nodegraph.io.EdgeList;
+import nodegraph.io.EdgeListDiff;
+
+/**
+ * Something that displays a graph, such as a scene graph or a canvas.
+ * Nodes are identified by their index in the displayed EdgeList.
+ *
+ * @author elio
+ */
+public interface GraphView {
+    public static final String[] TYPES = {"Scene graph", "Canvas"};
+    public static final byte
+            TYPE_SCENE_GRAPH = 0,
+            TYPE_CANVAS = 1;
+    
+    /**
+     * How much edges stick out of the bounding box of their endpoints (half
+     * the widest arrow, plus blur), and how much of the graph around the
+     * viewport is displayed too (e.g. labels wider than nodes).
+     */
+    public static final double
+            EDGE_PADDING = GraphNode.RADIUS * 2,
+            CULL_MARGIN = GraphNode.RADIUS * 4;
+
+    /**
+     * Display the given graph instead of the current one.
+     * Every node starts at (0, 0).
+     */
+    void setGraph (EdgeList edgeList);
+
+    /**
+     * Display the given graph keeping whatever it has in common with the
+     * current one, including node positions. New nodes start at (0, 0).
+     */
+    void updateGraph (EdgeList edgeList, EdgeListDiff diff);
+
+    /**
+     * Move nodes to the given positions, indexed by node.
+     */
+    void setPositions (double[] x, double[] y);
+
+    double getX (int node);
+
+    double getY (int node);
+
+    void setEdgeType (byte edgeType);
+
+    /**
+     * Stop displaying anything.
+     */
+    void clear ();
+}
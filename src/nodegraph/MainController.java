@@ -5,25 +5,45 @@
  */
 package nodegraph;
 
+import java.io.File;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Random;
 import java.util.ResourceBundle;
+import javafx.animation.AnimationTimer;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
+import javafx.event.EventHandler;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
-import javafx.geometry.Point2D;
-import javafx.scene.Group;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.ColorPicker;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.SpinnerValueFactory;
 import javafx.scene.control.TextArea;
+import javafx.scene.control.Tooltip;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.paint.Color;
+import javafx.stage.FileChooser;
+import nodegraph.io.EdgeList;
+import nodegraph.io.EdgeListDiff;
+import nodegraph.io.EdgeListParser;
+import nodegraph.io.GraphFile;
+import nodegraph.io.MappedEdgeListReader;
+import nodegraph.io.ParseError;
+import nodegraph.layout.FruchtermanReingold;
+import nodegraph.layout.IterativeLayout;
+import nodegraph.layout.LayoutGraph;
+import nodegraph.layout.LayoutSettings;
+import nodegraph.layout.PositionSnapshot;
+import nodegraph.perf.Instrumentation;
 
 /**
  *
@@ -40,257 +60,592 @@ public class MainController implements Initializable {
     @FXML
     private ColorPicker edgeColor;
     
+    @FXML
+    private ChoiceBox<String> renderers;
+    
+    @FXML
+    private ChoiceBox<String> repulsionTypes;
+    
+    @FXML
+    private Spinner<Double> theta;
+    
+    @FXML
+    private CheckBox multilevel;
+    
+    @FXML
+    private ChoiceBox<String> placements;
+    
+    @FXML
+    private CheckBox showStats;
+    
+    @FXML
+    private Label statsOverlay;
+    
+    @FXML
+    private Spinner<Integer> threads;
+    
+    @FXML
+    private Spinner<Integer> maxIterations;
+    
     @FXML
     private TextArea textAreaNodes;
     
+    @FXML
+    private Label inputErrors;
+    
     @FXML
     private Button buttonPlace;
     
+    @FXML
+    private Button buttonStop;
+    
+    @FXML
+    private ProgressBar layoutProgress;
+    
+    @FXML
+    private Label layoutStats;
+    
     @FXML // ResourceBundle that was given to the FXMLLoader
     private ResourceBundle resources;
     
-    // parent group where all nodes, edges and labeles should be.
-    private Group rootGroup;
+    // Zoom and pan of the canvas...
+    private Viewport viewport;
+    
+    // What displays the graph, one of the views below...
+    private GraphView view;
+    private GraphView sceneGraphView;
+    private GraphView canvasGraphView;
     
-    ArrayList<GraphNode> nodes;
+    // Displayed graph, if any...
+    private EdgeList edgeList;
+    
+    private StatsOverlay stats;
+    
+    /**
+     * "Re-place" only moves nodes this many edges away from a change, and
+     * does it starting from a low temperature with a short iteration budget.
+     */
+    public static final int RELAX_HOPS = 2;
+    public static final int RELAX_ITERATIONS = 100;
+    public static final double RELAX_TEMPERATURE = 0.2;
     
-    ArrayList<GraphEdge> edges;
+    // Layout running in the background, if any, and the timer displaying it...
+    private Task<Void> layoutTask;
+    private AnimationTimer layoutTimer;
     
     @Override
     public void initialize(URL url, ResourceBundle rb) {
         resources = rb;
         edgeTypes.setItems(FXCollections.observableArrayList(GraphEdge.TYPES));
         edgeTypes.getSelectionModel().selectFirst();
+        repulsionTypes.setItems(FXCollections.observableArrayList(FruchtermanReingold.REPULSION_TYPES));
+        repulsionTypes.getSelectionModel().selectFirst();
+        theta.setValueFactory(new SpinnerValueFactory.DoubleSpinnerValueFactory(0.1, 2.0, FruchtermanReingold.DEFAULT_THETA, 0.1));
+        theta.setEditable(true);
+        placements.setItems(FXCollections.observableArrayList(LayoutSettings.PLACEMENTS));
+        placements.getSelectionModel().selectFirst();
+        int cores = Runtime.getRuntime().availableProcessors();
+        threads.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1, cores, cores));
+        maxIterations.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1, 100000, LayoutSettings.DEFAULT_MAX_ITERATIONS, 50));
+        maxIterations.setEditable(true);
         edgeColor.setValue(Color.BLACK);
-        rootGroup = new Group();
-        canvas.getChildren().add(rootGroup);
         edgeColor.setValue(Color.web("#0000ff"));
+        viewport = new Viewport(canvas);
+        sceneGraphView = new SceneGraphView(canvas, edgeColor.valueProperty(), viewport);
+        canvasGraphView = new CanvasGraphView(canvas, edgeColor.valueProperty(), viewport);
+        view = sceneGraphView;
+        stats = new StatsOverlay(statsOverlay, canvas);
+        renderers.setItems(FXCollections.observableArrayList(GraphView.TYPES));
+        renderers.getSelectionModel().selectFirst();
         
         // Update edges when changing edge type...
         edgeTypes.getSelectionModel().selectedIndexProperty().addListener(new ChangeListener<Number>() {
             @Override
             public void changed(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
-                if (edges != null) {
-                    for (GraphEdge edge : edges) {
-                        edge.setEdgeType(newValue.byteValue());
-                        edge.update();
-                    }
-                }
+                sceneGraphView.setEdgeType(newValue.byteValue());
+                canvasGraphView.setEdgeType(newValue.byteValue());
+            }
+        });
+        
+        showStats.selectedProperty().addListener(new ChangeListener<Boolean>() {
+            @Override
+            public void changed(ObservableValue<? extends Boolean> observable, Boolean oldValue, Boolean newValue) {
+                stats.setVisible(newValue);
+            }
+        });
+        
+        // Move the graph to the other view when changing renderer...
+        renderers.getSelectionModel().selectedIndexProperty().addListener(new ChangeListener<Number>() {
+            @Override
+            public void changed(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
+                setView(newValue.intValue() == GraphView.TYPE_CANVAS ? canvasGraphView : sceneGraphView);
             }
         });
     }
     
     @FXML
     void handlePlaceAction(ActionEvent event) {
-        rootGroup.getChildren().clear();
-        nodes = new ArrayList<>();
-        edges = new ArrayList<>();
-        HashMap<String, String> attributes;
-        
         // Parse user input...
-        if (!textAreaNodes.getText().trim().isEmpty()) {
-            // Get every line in an array...
-            String[] lines = textAreaNodes.getText().trim().split("\n");
-            
-            for (String line : lines) {
-                String [] pairAndAttributes = line.trim().split(" ");
-                String nodePair = pairAndAttributes[0];
-                attributes = new HashMap();
-                
-                // Retrieve attributes if any...
-                if (pairAndAttributes.length > 1) {
-                    for (int i = 1; i < pairAndAttributes.length; i++) {
-                        String attr = pairAndAttributes[i];
-                        String[] nameValue = attr.split("=");
-                        attributes.put(nameValue[0].trim(), nameValue[1].trim());
-                    }
-                }
-                
-                // Default values are given here. All values should be between 0 and 1.
-                // Default width is an exception because it's different for tapered and arrow edges.
-                double width = Double.parseDouble(attributes.getOrDefault("w", "-1"));
-                double hue = Double.parseDouble(attributes.getOrDefault("h", "0.0"));
-                double opacity = Double.parseDouble(attributes.getOrDefault("o", "1.0"));
-                double fuzziness = Double.parseDouble(attributes.getOrDefault("f", "1.0"));
-                double brightness = Double.parseDouble(attributes.getOrDefault("b", "1.0"));
-                double grain = Double.parseDouble(attributes.getOrDefault("g", "1.0"));
-                
-                String[] nodesArr;
-                byte direction;
-                
-                if (nodePair.contains("-")) {
-                    nodesArr = nodePair.split("-");
-                    direction = GraphEdge.DIRECTION_NONE;
-                } 
-                else if (nodePair.contains(">")) {
-                    nodesArr = nodePair.split(">");
-                    direction = GraphEdge.DIRECTION_ONEWAY;
-                } 
-                else  if (nodePair.contains("<>")) {
-                    nodesArr = nodePair.split("<>");
-                    direction = GraphEdge.DIRECTION_BOTHWAYS;
-                } 
-                else { // is a single node...
-                    getOrCreate(nodePair);
-                    continue;
+        placeGraph(parse(textAreaNodes.getText()));
+    }
+    
+    @FXML
+    void handleOpenAction(ActionEvent event) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(resources.getString("button.open"));
+        final File file = chooser.showOpenDialog(canvas.getScene().getWindow());
+        if (file == null)
+            return;
+        
+        cancelLayout();
+        final int parallelism = threads.getValue();
+        
+        // Read straight into the graph model, the text area is left as is.
+        // Placed graph files are shown as they are, edge lists are placed...
+        Task<Object> read = new Task<Object>() {
+            @Override
+            protected Object call() throws Exception {
+                if (GraphFile.isGraphFile(file.toPath())) {
+                    long begin = Instrumentation.begin();
+                    GraphFile graphFile = GraphFile.read(file.toPath());
+                    Instrumentation.end(Instrumentation.PHASE_PARSE, begin, graphFile.getEdgeList().getEdgeCount());
+                    return graphFile;
                 }
                 
-                GraphNode fromNode = getOrCreate(nodesArr[0]);
-                GraphNode toNode = getOrCreate(nodesArr[1]);
-                byte edgeType = (byte)edgeTypes.getSelectionModel().getSelectedIndex();
-
-                GraphEdge edge = new GraphEdge(fromNode, toNode, edgeType, direction);
-                fromNode.getOutboundEdges().add(edge);
-                toNode.getInboundEdges().add(edge);
-                
-                edge.setWidth(width);
-                edge.setHue(hue);
-                edge.setOpacity(opacity);
-                edge.setFuzziness(1 - fuzziness);
-                edge.setBrightness(1 - brightness);
-                edge.setGrain(1 - grain);
-                edge.getColorProperty().bind(edgeColor.valueProperty());
-
-                edges.add(edge);
-                rootGroup.getChildren().add(0, edge.getEdgeGroup());
+                long begin = Instrumentation.begin();
+                EdgeList edgeList = new MappedEdgeListReader(parallelism).read(file.toPath());
+                Instrumentation.end(Instrumentation.PHASE_PARSE, begin, edgeList.getLineCount());
+                return edgeList;
             }
-        }
+        };
+        read.setOnSucceeded(new EventHandler<WorkerStateEvent>() {
+            @Override
+            public void handle(WorkerStateEvent event) {
+                Object value = event.getSource().getValue();
+                if (value instanceof GraphFile)
+                    showGraph((GraphFile)value);
+                else
+                    placeGraph((EdgeList)value);
+            }
+        });
+        read.setOnFailed(new EventHandler<WorkerStateEvent>() {
+            @Override
+            public void handle(WorkerStateEvent event) {
+                inputErrors.setText(String.format(resources.getString("label.readerror"), file.getName()));
+                inputErrors.setTooltip(new Tooltip(String.valueOf(event.getSource().getException())));
+            }
+        });
+        
+        Thread thread = new Thread(read, "read");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    @FXML
+    void handleSaveAction(ActionEvent event) {
+        if (edgeList == null)
+            return;
         
-        double minX = canvas.getWidth() / 2;
-        double minY = canvas.getHeight() / 2;
-        
-        double radius = (nodes.size() * GraphNode.RADIUS * 1.5) / Math.PI;
-        double x, y;
-        double angle = 2 * Math.PI / nodes.size();
-        int j = 1;
-        // Place nodes initially according to the amount of incoming edges...
-        for (GraphNode node : nodes) {
-            x = minX + radius * Math.cos(j * angle);
-            y = minY + radius * Math.sin(j * angle);
-            node.getBody().setTranslateX(x);
-            node.getBody().setTranslateY(y);
-            j++;
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(resources.getString("button.save"));
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter(
+                resources.getString("label.graphfiles"), "*." + GraphFile.EXTENSION));
+        final File file = chooser.showSaveDialog(canvas.getScene().getWindow());
+        if (file == null)
+            return;
+        
+        // Nodes where they are shown now, even if the layout is still running...
+        double[] x = new double[edgeList.getNodeCount()];
+        double[] y = new double[edgeList.getNodeCount()];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = view.getX(i);
+            y[i] = view.getY(i);
         }
+        final GraphFile graphFile = new GraphFile(edgeList, x, y);
+        
+        Task<Void> write = new Task<Void>() {
+            @Override
+            protected Void call() throws Exception {
+                graphFile.write(file.toPath());
+                return null;
+            }
+        };
+        write.setOnFailed(new EventHandler<WorkerStateEvent>() {
+            @Override
+            public void handle(WorkerStateEvent event) {
+                inputErrors.setText(String.format(resources.getString("label.writeerror"), file.getName()));
+                inputErrors.setTooltip(new Tooltip(String.valueOf(event.getSource().getException())));
+            }
+        });
+        
+        Thread thread = new Thread(write, "write");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Display the given graph and start laying it out.
+     */
+    private void placeGraph (EdgeList edgeList) {
+        cancelLayout();
+        setGraph(edgeList);
         
-        // Initialize variables for the Fruchterman Reingold algorithm...
-        double area = canvas.getWidth() * canvas.getHeight();
-        double speed = 300;
-        double speedDivisor = 2000;
-        double areaMultiplier = 0.2;
-        double k = Math.sqrt((area * areaMultiplier) / nodes.size());
-        double maxDisplace = Math.sqrt(areaMultiplier * area) / 10;
-        
-        // Run Fruchterman Reingold algorithm...
-        for (int i = 0; i < 150; i++) {
-            fruchtermanReingold(area, k, speed, speedDivisor, maxDisplace);
+        // Lay nodes out without touching the view...
+        final LayoutGraph graph = toLayoutGraph();
+        final LayoutSettings settings = newLayoutSettings();
+        Runnable placement = null;
+        
+        if (settings.getPlacement() == LayoutSettings.PLACEMENT_PIVOT_MDS) {
+            // Place nodes on the worker thread, as it takes a while for big graphs...
+            placement = new Runnable() {
+                @Override
+                public void run() {
+                    settings.place(graph);
+                }
+            };
+        } else {
+            settings.place(graph);
         }
-
-        // Update edges...
-        for (GraphEdge edge : edges)
-            edge.update();
+        
+        IterativeLayout layout = settings.newLayout(graph);
+        startLayout(layout, settings.getIterationBudget(layout), placement);
     }
     
     /**
-     * Adapted from Gephi's Fruchterman Reingold's algorithm implementation.
-     * See: Graph Drawing by Force directed Placement (Fruchterman et al, 1991)
+     * Display a graph which is placed already, without laying it out.
      */
-    void fruchtermanReingold (double area, double k, double speed, double speedDivisor, double maxDisplace) {
-        double force;
+    private void showGraph (GraphFile graphFile) {
+        cancelLayout();
+        setGraph(graphFile.getEdgeList());
+        applyPositions(graphFile.getX(), graphFile.getY());
+    }
+    
+    /**
+     * Display a new graph, with every node at the origin.
+     */
+    private void setGraph (EdgeList edgeList) {
+        showErrors(edgeList);
+        this.edgeList = edgeList;
+        viewport.reset();
+        long begin = Instrumentation.begin();
+        view.setGraph(edgeList);
+        Instrumentation.end(Instrumentation.PHASE_SET_GRAPH, begin, edgeList.getNodeCount() + edgeList.getEdgeCount());
+        stats.setGraph(edgeList.getNodeCount(), edgeList.getEdgeCount());
+    }
+    
+    @FXML
+    void handleReplaceAction(ActionEvent event) {
+        EdgeList newEdgeList = parse(textAreaNodes.getText());
         
-        for (GraphNode n : nodes) {
-            n.dx = 0;
-            n.dy = 0;
+        if (edgeList == null || edgeList.getNodeCount() == 0) {
+            placeGraph(newEdgeList);
+            return;
         }
         
-        // Calculate repulsive forces...
-        for (GraphNode n1 : nodes) {
-            for (GraphNode n2 : nodes) {
-                if (n1.getId() != n2.getId()) {
-                    Point2D posn1 = n1.getPosition();
-                    Point2D posn2 = n2.getPosition();
-
-                    double xdiff = posn1.getX() - posn2.getX();
-                    double ydiff = posn1.getY() - posn2.getY();
-
-                    double dist = Math.sqrt(xdiff * xdiff + ydiff * ydiff);
-
-                    if (dist > 0) {
-                        force = k * k / dist;
-                        n1.dx += xdiff / dist * force;
-                        n1.dy += ydiff / dist * force;
+        cancelLayout();
+        showErrors(newEdgeList);
+        EdgeListDiff diff = new EdgeListDiff(edgeList, newEdgeList);
+        edgeList = newEdgeList;
+        long begin = Instrumentation.begin();
+        view.updateGraph(edgeList, diff);
+        Instrumentation.end(Instrumentation.PHASE_SET_GRAPH, begin, edgeList.getNodeCount() + edgeList.getEdgeCount());
+        stats.setGraph(edgeList.getNodeCount(), edgeList.getEdgeCount());
+        
+        // Start from the current positions. New nodes go next to their neighbors...
+        LayoutGraph graph = toLayoutGraph();
+        for (int i = 0; i < edgeList.getNodeCount(); i++)
+            graph.setPosition(i, view.getX(i), view.getY(i));
+        placeNewNodes(graph, diff);
+        
+        // Only relax what's around the changes...
+        boolean[] pinned = new boolean[edgeList.getNodeCount()];
+        boolean[] near = neighborhood(graph, diff.getChanged(), RELAX_HOPS);
+        for (int i = 0; i < pinned.length; i++)
+            pinned[i] = !near[i];
+        
+        FruchtermanReingold layout = newLayoutSettings().newSingleLevelLayout(graph);
+        layout.setPinned(pinned);
+        layout.setTemperature(RELAX_TEMPERATURE);
+        startLayout(layout, Math.min(RELAX_ITERATIONS, maxIterations.getValue()), null);
+    }
+    
+    private LayoutGraph toLayoutGraph () {
+        LayoutGraph graph = new LayoutGraph(edgeList.getNodeCount(), edgeList.getEdgeCount());
+        for (int i = 0; i < edgeList.getNodeCount(); i++)
+            graph.addNode();
+        for (int e = 0; e < edgeList.getEdgeCount(); e++)
+            graph.addEdge(edgeList.getSource(e), edgeList.getTarget(e));
+        return graph;
+    }
+    
+    /**
+     * @return the layout settings selected in the UI, for the canvas size.
+     */
+    private LayoutSettings newLayoutSettings () {
+        LayoutSettings settings = new LayoutSettings(canvas.getWidth(), canvas.getHeight());
+        settings.setPlacement(placements.getSelectionModel().getSelectedIndex());
+        settings.setMultilevel(multilevel.isSelected());
+        settings.setMargin(GraphNode.RADIUS);
+        settings.setTheta(theta.getValue());
+        settings.setRepulsion((byte)repulsionTypes.getSelectionModel().getSelectedIndex());
+        settings.setParallelism(threads.getValue());
+        settings.setMaxIterations(maxIterations.getValue());
+        return settings;
+    }
+    
+    @FXML
+    void handleStopAction(ActionEvent event) {
+        cancelLayout();
+    }
+    
+    /**
+     * Run the layout on a worker thread. Positions are copied into the scene
+     * graph once per pulse, so the graph can be seen settling.
+     * @param placement initial placement to run on the worker thread first, or null.
+     */
+    private void startLayout (final IterativeLayout layout, final int total, final Runnable placement) {
+        final LayoutGraph graph = layout.getGraph();
+        final PositionSnapshot snapshot = new PositionSnapshot();
+        final double[] x = new double[graph.getNodeCount()];
+        final double[] y = new double[graph.getNodeCount()];
+        final String statsFormat = resources.getString("label.layoutstats");
+        
+        // Show the initial placement on the first pulse...
+        if (placement == null)
+            snapshot.publish(graph);
+        
+        final Task<Void> task = new Task<Void>() {
+            @Override
+            protected Void call() throws Exception {
+                try {
+                    if (placement != null) {
+                        long begin = Instrumentation.begin();
+                        placement.run();
+                        Instrumentation.end(Instrumentation.PHASE_PLACEMENT, begin, graph.getNodeCount());
+                        snapshot.publish(graph);
+                    }
+                    
+                    for (int i = 0; i < total && !isCancelled() && !layout.isConverged(); i++) {
+                        long begin = Instrumentation.begin();
+                        layout.step();
+                        Instrumentation.end(Instrumentation.PHASE_LAYOUT_ITERATION, begin, graph.getNodeCount());
+                        
+                        // Positions are only brought up to date for pulses...
+                        if (!snapshot.isPending()) {
+                            layout.updateGraph();
+                            snapshot.publish(graph);
+                        }
+                        updateProgress(i + 1, total);
+                        updateMessage(String.format(statsFormat, layout.getIterations(), layout.getEnergy()));
                     }
+                    
+                    layout.updateGraph();
+                    snapshot.publish(graph);
+                } finally {
+                    layout.shutdown();
                 }
+                return null;
             }
-        }
-
-        // Calculate attractive forces...
-        for (GraphEdge edge : edges) {
-            GraphNode sNode = edge.getSource();
-            GraphNode tNode = edge.getTarget();
-            Point2D sPos = sNode.getPosition();
-            Point2D tPos = tNode.getPosition();
-
-            double xdiff = sPos.getX() - tPos.getX();
-            double ydiff = sPos.getY() - tPos.getY();
-            double dist = Math.sqrt(xdiff * xdiff + ydiff * ydiff);
-
-            force = dist * dist / k;
-
-            if (dist > 0) {
-                sNode.dx -= (xdiff / dist) * force;
-                sNode.dy -= (ydiff / dist) * force;
-                tNode.dx += (xdiff / dist) * force;
-                tNode.dy += (ydiff / dist) * force;
+        };
+        
+        final AnimationTimer timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (snapshot.copyTo(x, y))
+                    applyPositions(x, y);
             }
-        }
+        };
         
-        for (GraphNode n : nodes) {
-            n.dx *= speed / speedDivisor;
-            n.dy *= speed / speedDivisor;
-        }
-
-        for (GraphNode n : nodes) {
-            Point2D pos = n.getPosition();
-            double deltaLength = Math.sqrt(n.dx * n.dx + n.dy * n.dy);
-
-            if (deltaLength > 0) {
-                double min = Math.min(maxDisplace * (speed / speedDivisor), deltaLength);
-                double x = pos.getX() + n.dx / deltaLength * min;
-                double y = pos.getY() + n.dy / deltaLength * min;
+        EventHandler<WorkerStateEvent> done = new EventHandler<WorkerStateEvent>() {
+            @Override
+            public void handle(WorkerStateEvent event) {
+                timer.stop();
                 
-                // Don't let it leave the canvas...
-                x = x < GraphNode.RADIUS ? GraphNode.RADIUS + 1 : x;
-                x = x > canvas.getWidth() - GraphNode.RADIUS ? canvas.getWidth() - GraphNode.RADIUS - 1 : x;
-                y = y < GraphNode.RADIUS ? GraphNode.RADIUS + 1 : y;
-                y = y > canvas.getHeight() - GraphNode.RADIUS ? canvas.getHeight() - GraphNode.RADIUS - 1 : y;
-
-                n.setPosition(x, y);
+                // A newer layout may have replaced this one already...
+                if (layoutTask != task)
+                    return;
+                
+                if (snapshot.copyTo(x, y))
+                    applyPositions(x, y);
+                layoutFinished();
             }
-        }
+        };
+        task.setOnSucceeded(done);
+        task.setOnFailed(done);
+        
+        layoutTask = task;
+        layoutTimer = timer;
+        layoutProgress.progressProperty().bind(task.progressProperty());
+        layoutStats.textProperty().bind(task.messageProperty());
+        buttonStop.setDisable(false);
+        
+        Thread thread = new Thread(task, "layout");
+        thread.setDaemon(true);
+        thread.start();
+        timer.start();
+    }
+    
+    /**
+     * Stop the running layout, if any, leaving nodes where they are.
+     */
+    private void cancelLayout () {
+        if (layoutTask == null)
+            return;
+        
+        layoutTask.cancel();
+        layoutTimer.stop();
+        layoutFinished();
+    }
+    
+    private void layoutFinished () {
+        layoutTask = null;
+        layoutTimer = null;
+        layoutProgress.progressProperty().unbind();
+        layoutStats.textProperty().unbind();
+        layoutProgress.setProgress(0);
+        buttonStop.setDisable(true);
+    }
+    
+    /**
+     * Move nodes to the given positions (indexed by node) and update edges.
+     */
+    private void applyPositions (double[] x, double[] y) {
+        long begin = Instrumentation.begin();
+        view.setPositions(x, y);
+        Instrumentation.end(Instrumentation.PHASE_POSITIONS, begin, x.length);
     }
     
+    private EdgeList parse (String text) {
+        long begin = Instrumentation.begin();
+        EdgeList edgeList = new EdgeListParser().parse(text);
+        Instrumentation.end(Instrumentation.PHASE_PARSE, begin, edgeList.getLineCount());
+        return edgeList;
+    }
     
     /**
-     * Get or create node with the given label.
-     * Created nodes are added to the rootGroup for displaying.
-     * 
-     * @param nodeLabel Node label id which is unique for every node.
-     * @return The existing or newly created node.
+     * Display the current graph, where it is, with another view.
      */
-    private GraphNode getOrCreate (String nodeLabel) {
-        GraphNode node = null;
+    private void setView (GraphView newView) {
+        if (newView == view)
+            return;
         
-        for (GraphNode n : nodes)
-            if (n.getLabel().equalsIgnoreCase(nodeLabel))
-                node = n;
+        GraphView oldView = view;
+        view = newView;
+        if (edgeList == null)
+            return;
         
-        if (node == null) {
-            node = new GraphNode(nodes.size(), nodeLabel);
-            nodes.add(node);
-            rootGroup.getChildren().add(node.getBody());
+        double[] x = new double[edgeList.getNodeCount()];
+        double[] y = new double[edgeList.getNodeCount()];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = oldView.getX(i);
+            y[i] = oldView.getY(i);
         }
+        
+        oldView.clear();
+        view.setGraph(edgeList);
+        view.setPositions(x, y);
+    }
+    
+    /**
+     * Put nodes which were just created at the barycenter of their old
+     * neighbors, or at the center of the canvas if they have none.
+     */
+    private void placeNewNodes (LayoutGraph graph, EdgeListDiff diff) {
+        int n = graph.getNodeCount();
+        double[] sumX = new double[n];
+        double[] sumY = new double[n];
+        int[] count = new int[n];
+        
+        for (int e = 0; e < graph.getEdgeCount(); e++) {
+            int s = graph.getSource(e);
+            int t = graph.getTarget(e);
+            if (diff.isCreated(s) && !diff.isCreated(t)) {
+                sumX[s] += graph.getX(t);
+                sumY[s] += graph.getY(t);
+                count[s]++;
+            }
+            if (diff.isCreated(t) && !diff.isCreated(s)) {
+                sumX[t] += graph.getX(s);
+                sumY[t] += graph.getY(s);
+                count[t]++;
+            }
+        }
+        
+        for (int i = 0; i < n; i++) {
+            if (!diff.isCreated(i))
+                continue;
+            
+            double x, y;
+            if (count[i] == 0) {
+                x = canvas.getWidth() / 2;
+                y = canvas.getHeight() / 2;
+            } else {
+                x = sumX[i] / count[i];
+                y = sumY[i] / count[i];
+            }
             
-        return node;
+            // A small offset keeps siblings from landing on the same spot...
+            graph.setPosition(i, x + GraphNode.RADIUS * Math.cos(i), y + GraphNode.RADIUS * Math.sin(i));
+        }
+    }
+    
+    /**
+     * @return true for every node at most hops edges away from a changed one.
+     */
+    private boolean[] neighborhood (LayoutGraph graph, boolean[] changed, int hops) {
+        boolean[] near = changed.clone();
+        
+        for (int h = 0; h < hops; h++) {
+            boolean[] next = near.clone();
+            for (int e = 0; e < graph.getEdgeCount(); e++) {
+                int s = graph.getSource(e);
+                int t = graph.getTarget(e);
+                next[s] |= near[t];
+                next[t] |= near[s];
+            }
+            near = next;
+        }
+        
+        return near;
+    }
+    
+    /**
+     * Show how many input lines had errors, listing them in a tooltip.
+     */
+    private void showErrors (EdgeList edgeList) {
+        if (edgeList.getErrorCount() == 0) {
+            inputErrors.setText("");
+            inputErrors.setTooltip(null);
+            return;
+        }
+        
+        StringBuilder details = new StringBuilder();
+        for (ParseError error : edgeList.getErrors())
+            details.append(error).append('\n');
+        
+        inputErrors.setText(String.format(resources.getString("label.inputerrors"), edgeList.getErrorCount()));
+        inputErrors.setTooltip(new Tooltip(details.toString()));
+    }
+    
+    /**
+     * @return the view displaying the graph, e.g. for scripted benchmarks.
+     */
+    public GraphView getView () {
+        return view;
+    }
+    
+    /**
+     * @return the displayed graph, or null.
+     */
+    public EdgeList getEdgeList () {
+        return edgeList;
+    }
+    
+    /**
+     * @return true while a layout runs in the background.
+     */
+    public boolean isLayoutRunning () {
+        return layoutTask != null;
     }
     
     /**
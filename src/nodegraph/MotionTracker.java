@@ -0,0 +1,63 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph;
+
+import javafx.animation.PauseTransition;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.util.Duration;
+
+/**
+ * Tells whether something is being dragged or animated, so that views can
+ * draw drafts while it moves and go back to full quality shortly after it
+ * stops.
+ *
+ * @author elio
+ */
+public class MotionTracker {
+    /**
+     * Time without motion after which things are considered still.
+     */
+    public static final Duration IDLE_DELAY = Duration.millis(250);
+
+    private final ReadOnlyBooleanWrapper moving = new ReadOnlyBooleanWrapper(false);
+    private final PauseTransition idle = new PauseTransition(IDLE_DELAY);
+
+    public MotionTracker () {
+        idle.setOnFinished(new EventHandler<ActionEvent>() {
+            @Override
+            public void handle(ActionEvent event) {
+                moving.set(false);
+            }
+        });
+    }
+
+    /**
+     * Something moved just now.
+     */
+    public void motion () {
+        moving.set(true);
+        idle.playFromStart();
+    }
+
+    /**
+     * Consider things still right away.
+     */
+    public void stop () {
+        idle.stop();
+        moving.set(false);
+    }
+
+    public boolean isMoving () {
+        return moving.get();
+    }
+
+    public ReadOnlyBooleanProperty movingProperty () {
+        return moving.getReadOnlyProperty();
+    }
+}
@@ -0,0 +1,606 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import javafx.animation.AnimationTimer;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.value.ObservableValue;
+import javafx.event.EventHandler;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import nodegraph.io.EdgeList;
+import nodegraph.io.EdgeListDiff;
+import nodegraph.perf.Instrumentation;
+import nodegraph.render.EdgeBatch;
+import nodegraph.render.GraphIndex;
+import nodegraph.render.LevelOfDetail;
+
+/**
+ * Displays a graph with a GraphNode and a GraphEdge (and their JavaFX
+ * nodes and effects) per node and edge in the viewport.
+ * Positions are kept apart from the JavaFX nodes, which are only created
+ * for nodes and edges intersecting the viewport (and the endpoints of such
+ * edges), and are pooled when they leave it.
+ * While a node is dragged, everything else is cached as a bitmap and only
+ * the node and its edges are rendered live, on a layer of their own.
+ *
+ * @author elio
+ */
+public class SceneGraphView implements GraphView {
+    /**
+     * Pooled GraphNodes and GraphEdges kept at most, each.
+     */
+    private static final int MAXIMUM_POOL_SIZE = 10000;
+
+    /**
+     * Nanoseconds between index rebuilds while a layout moves everything.
+     * Culling uses the previous index meanwhile.
+     */
+    private static final long INDEX_INTERVAL = 200000000L;
+
+    private final Pane parent;
+    private final Viewport viewport;
+    private byte edgeType;
+
+    // parent group where all nodes, edges and labeles should be.
+    private final Group rootGroup;
+    private final Group edgeLayer;
+    private final Group nodeLayer;
+    private final Group liveLayer;
+
+    // Node being dragged, whose edges and body are in liveLayer, if any...
+    private GraphNode liveNode;
+
+    private EdgeList edgeList;
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+
+    // Displayed nodes and edges, indexed by node and edge, or null...
+    private GraphNode[] nodes = new GraphNode[0];
+    private GraphEdge[] edges = new GraphEdge[0];
+
+    // ... and which ones they are.
+    private int[] shownNodes = new int[0];
+    private int shownNodeCount;
+    private int[] shownEdges = new int[0];
+    private int shownEdgeCount;
+
+    // Nodes and edges which should be displayed, while culling...
+    private boolean[] wantedNodes = new boolean[0];
+    private boolean[] wantedEdges = new boolean[0];
+
+    // Effects shared by edges with equal attributes...
+    private final EdgeStyle.Cache styles = new EdgeStyle.Cache();
+
+    // Outlines of the displayed edges, when updating all of them...
+    private final EdgeBatch batch = new EdgeBatch();
+
+    private final ArrayDeque<GraphNode> nodePool = new ArrayDeque<>();
+    private final ArrayDeque<GraphEdge> edgePool = new ArrayDeque<>();
+
+    private final GraphIndex index = new GraphIndex(GraphNode.RADIUS, EDGE_PADDING);
+    private boolean indexDirty;
+
+    // Positions were set since the index was built, when it was...
+    private boolean indexStale;
+    private long indexTime;
+
+    // Level of detail of whatever is displayed, and the zoom it was chosen for...
+    private byte detail = LevelOfDetail.DETAIL_FULL;
+    private double detailZoom = 1;
+
+    // Culls once per pulse when the viewport changes or a node is dragged...
+    private final AnimationTimer cullTimer;
+    private final InvalidationListener nodeMoved;
+    private final EventHandler<MouseEvent> dragDetected;
+    private final EventHandler<MouseEvent> released;
+    private boolean settingPositions;
+
+    // Drafts are displayed while dragging or animating...
+    private final MotionTracker motion = new MotionTracker();
+
+    // Coalesces edge updates while dragging nodes...
+    private final EdgeUpdater edgeUpdater = new EdgeUpdater();
+
+    /**
+     * @param parent where the graph is displayed.
+     * @param color edge color.
+     * @param viewport zoom and pan of parent.
+     */
+    public SceneGraphView (Pane parent, ObservableValue<Color> color, Viewport viewport) {
+        this.parent = parent;
+        this.viewport = viewport;
+        edgeLayer = new Group();
+        nodeLayer = new Group();
+        liveLayer = new Group();
+        rootGroup = new Group(edgeLayer, nodeLayer, liveLayer);
+        rootGroup.getTransforms().addAll(viewport.getTranslate(), viewport.getScale());
+
+        cullTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                stop();
+                cull();
+            }
+        };
+        InvalidationListener requestCull = new InvalidationListener() {
+            @Override
+            public void invalidated(Observable observable) {
+                if (edgeList != null)
+                    cullTimer.start();
+            }
+        };
+        viewport.addListener(requestCull);
+
+        // Edges are bound to the color of their styles, shared by all of them...
+        styles.colorProperty().bind(color);
+        motion.movingProperty().addListener(requestCull);
+        nodeMoved = new InvalidationListener() {
+            @Override
+            public void invalidated(Observable observable) {
+                // Positions set by this view are known already...
+                if (settingPositions)
+                    return;
+
+                indexDirty = true;
+                motion.motion();
+                cullTimer.start();
+            }
+        };
+        dragDetected = new EventHandler<MouseEvent>() {
+            @Override
+            public void handle(MouseEvent event) {
+                startLive((GraphNode)((Node)event.getSource()).getUserData());
+            }
+        };
+        released = new EventHandler<MouseEvent>() {
+            @Override
+            public void handle(MouseEvent event) {
+                stopLive();
+            }
+        };
+    }
+
+    @Override
+    public void setGraph (EdgeList edgeList) {
+        clear();
+        parent.getChildren().add(rootGroup);
+        setModel(edgeList, new double[edgeList.getNodeCount()], new double[edgeList.getNodeCount()]);
+        cull();
+    }
+
+    /**
+     * Nodes in common keep their positions. JavaFX objects are pooled and
+     * reused for whatever is displayed afterwards.
+     */
+    @Override
+    public void updateGraph (EdgeList edgeList, EdgeListDiff diff) {
+        releaseAll();
+
+        double[] newX = new double[edgeList.getNodeCount()];
+        double[] newY = new double[edgeList.getNodeCount()];
+        for (int i = 0; i < newX.length; i++)
+            if (!diff.isCreated(i)) {
+                newX[i] = x[diff.getPreviousNode(i)];
+                newY[i] = y[diff.getPreviousNode(i)];
+            }
+
+        setModel(edgeList, newX, newY);
+        cull();
+    }
+
+    private void setModel (EdgeList edgeList, double[] x, double[] y) {
+        int n = edgeList == null ? 0 : edgeList.getNodeCount();
+        int m = edgeList == null ? 0 : edgeList.getEdgeCount();
+
+        this.edgeList = edgeList;
+        this.x = x;
+        this.y = y;
+        nodes = new GraphNode[n];
+        edges = new GraphEdge[m];
+        shownNodes = new int[n];
+        shownEdges = new int[m];
+        wantedNodes = new boolean[n];
+        wantedEdges = new boolean[m];
+        shownNodeCount = 0;
+        shownEdgeCount = 0;
+        indexDirty = true;
+    }
+
+    /**
+     * Display the nodes and edges in the viewport, and only those.
+     */
+    private void cull () {
+        if (edgeList == null)
+            return;
+
+        // Static layers stay as they are until the drag ends...
+        if (liveNode != null) {
+            double zoom = viewport.getZoom();
+            setLiveDetail(LevelOfDetail.choose(zoom, shownNodeCount + shownEdgeCount, motion.isMoving()), zoom);
+            return;
+        }
+
+        // Positions set by a running layout are indexed a few times per second...
+        if (indexDirty || (indexStale && (!motion.isMoving() || System.nanoTime() - indexTime >= INDEX_INTERVAL))) {
+            syncPositions();
+            index.build(edgeList, x, y);
+            indexDirty = false;
+            indexStale = false;
+            indexTime = System.nanoTime();
+        }
+
+        index.query(viewport.getLeft() - CULL_MARGIN, viewport.getTop() - CULL_MARGIN,
+                viewport.getRight() + CULL_MARGIN, viewport.getBottom() + CULL_MARGIN);
+
+        double zoom = viewport.getZoom();
+        byte newDetail = LevelOfDetail.choose(zoom, index.getVisibleNodeCount() + index.getVisibleEdgeCount(),
+                motion.isMoving());
+        boolean detailChanged = newDetail != detail
+                || (newDetail == LevelOfDetail.DETAIL_POINTS && zoom != detailZoom);
+        detail = newDetail;
+        detailZoom = zoom;
+
+        // Whatever is visible, plus the endpoints of visible edges...
+        for (int k = 0; k < index.getVisibleNodeCount(); k++)
+            wantedNodes[index.getVisibleNode(k)] = true;
+        for (int k = 0; k < index.getVisibleEdgeCount(); k++) {
+            int e = index.getVisibleEdge(k);
+            wantedEdges[e] = true;
+            wantedNodes[edgeList.getSource(e)] = true;
+            wantedNodes[edgeList.getTarget(e)] = true;
+        }
+
+        // Release edges first, so released nodes have none left...
+        HashSet<Node> removed = new HashSet<>();
+        int kept = 0;
+        for (int k = 0; k < shownEdgeCount; k++) {
+            int e = shownEdges[k];
+            if (wantedEdges[e])
+                shownEdges[kept++] = e;
+            else
+                removed.add(releaseEdge(e));
+        }
+        shownEdgeCount = kept;
+        edgeLayer.getChildren().removeAll(removed);
+
+        removed.clear();
+        kept = 0;
+        for (int k = 0; k < shownNodeCount; k++) {
+            int i = shownNodes[k];
+            if (wantedNodes[i])
+                shownNodes[kept++] = i;
+            else
+                removed.add(releaseNode(i));
+        }
+        shownNodeCount = kept;
+        nodeLayer.getChildren().removeAll(removed);
+
+        // Then display what's missing, nodes first...
+        for (int k = 0; k < index.getVisibleNodeCount(); k++)
+            showNode(index.getVisibleNode(k));
+        for (int k = 0; k < index.getVisibleEdgeCount(); k++) {
+            int e = index.getVisibleEdge(k);
+            showNode(edgeList.getSource(e));
+            showNode(edgeList.getTarget(e));
+            showEdge(e);
+        }
+
+        for (int k = 0; k < shownNodeCount; k++)
+            wantedNodes[shownNodes[k]] = false;
+        for (int k = 0; k < shownEdgeCount; k++)
+            wantedEdges[shownEdges[k]] = false;
+
+        if (detailChanged)
+            setDetail();
+    }
+
+    /**
+     * Apply a level of detail to the dragged node and its edges only, e.g.
+     * drafts while dragging, leaving the cached static layers alone.
+     */
+    private void setLiveDetail (byte liveDetail, double zoom) {
+        liveNode.setDetail(liveDetail);
+        for (GraphEdge edge : liveNode.getInboundEdges())
+            setLiveDetail(edge, liveDetail, zoom);
+        for (GraphEdge edge : liveNode.getOutboundEdges())
+            setLiveDetail(edge, liveDetail, zoom);
+    }
+
+    private void setLiveDetail (GraphEdge edge, byte liveDetail, double zoom) {
+        // Point widths depend on the zoom, so those are always set...
+        if (edge.getDetail() == liveDetail && liveDetail != LevelOfDetail.DETAIL_POINTS)
+            return;
+        edge.setDetail(liveDetail, zoom);
+        edge.update();
+    }
+
+    /**
+     * Apply the current level of detail to everything displayed.
+     */
+    private void setDetail () {
+        for (int k = 0; k < shownNodeCount; k++)
+            nodes[shownNodes[k]].setDetail(detail);
+
+        for (int k = 0; k < shownEdgeCount; k++)
+            edges[shownEdges[k]].setDetail(detail, detailZoom);
+
+        updateShownEdges();
+    }
+
+    /**
+     * Update every displayed edge, computing their outlines in one batch.
+     */
+    private void updateShownEdges () {
+        long begin = Instrumentation.begin();
+        batch.clear();
+        for (int k = 0; k < shownEdgeCount; k++) {
+            GraphEdge edge = edges[shownEdges[k]];
+            GraphNode source = edge.getSource();
+            GraphNode target = edge.getTarget();
+            batch.add(edge.getOutlineDirection(), source.getX(), source.getY(),
+                    target.getX(), target.getY(), edge.getWidth());
+        }
+
+        batch.compute(edgeType, GraphNode.RADIUS);
+
+        double[] outlines = batch.getOutlines();
+        for (int k = 0; k < shownEdgeCount; k++)
+            edges[shownEdges[k]].setOutline(outlines, batch.getOffset(k), batch.getVertexCount(k));
+
+        Instrumentation.end(Instrumentation.PHASE_EDGE_UPDATE, begin, shownEdgeCount);
+    }
+
+    private void showNode (int i) {
+        if (nodes[i] != null)
+            return;
+
+        GraphNode node = nodePool.poll();
+        if (node == null) {
+            node = new GraphNode(i, edgeList.getLabels().getLabel(i), edgeUpdater);
+            node.getBody().translateXProperty().addListener(nodeMoved);
+            node.getBody().translateYProperty().addListener(nodeMoved);
+            node.getBody().addEventHandler(MouseEvent.DRAG_DETECTED, dragDetected);
+            node.getBody().addEventHandler(MouseEvent.MOUSE_RELEASED, released);
+            node.getBody().setUserData(node);
+        } else {
+            node.setId(i);
+            node.setLabel(edgeList.getLabels().getLabel(i));
+        }
+
+        settingPositions = true;
+        node.setPosition(x[i], y[i]);
+        settingPositions = false;
+        node.setDetail(detail);
+
+        nodes[i] = node;
+        shownNodes[shownNodeCount++] = i;
+        nodeLayer.getChildren().add(node.getBody());
+    }
+
+    private void showEdge (int e) {
+        if (edges[e] != null)
+            return;
+
+        GraphNode fromNode = nodes[edgeList.getSource(e)];
+        GraphNode toNode = nodes[edgeList.getTarget(e)];
+        GraphEdge edge = edgePool.poll();
+
+        if (edge == null) {
+            edge = new GraphEdge(fromNode, toNode, edgeType, edgeList.getDirection(e));
+        } else {
+            edge.setSource(fromNode);
+            edge.setTarget(toNode);
+            edge.setEdgeType(edgeType);
+            edge.setDirection(edgeList.getDirection(e));
+        }
+
+        fromNode.addOutboundEdge(edge);
+        toNode.addInboundEdge(edge);
+        setAttributes(edge, edgeList, e);
+        edge.setDetail(detail, detailZoom);
+        edge.update();
+
+        edges[e] = edge;
+        shownEdges[shownEdgeCount++] = e;
+        edgeLayer.getChildren().add(edge.getEdgeGroup());
+    }
+
+    /**
+     * Stop displaying edge e, pooling its GraphEdge.
+     * @return the JavaFX node to remove.
+     */
+    private Node releaseEdge (int e) {
+        GraphEdge edge = edges[e];
+        edges[e] = null;
+        // Swapping the last edge in, as hubs may lose thousands at once...
+        edge.getSource().removeOutboundEdge(edge);
+        edge.getTarget().removeInboundEdge(edge);
+
+        if (edgePool.size() < MAXIMUM_POOL_SIZE)
+            edgePool.add(edge);
+        return edge.getEdgeGroup();
+    }
+
+    /**
+     * Stop displaying node i, pooling its GraphNode. It shouldn't have any
+     * displayed edge left.
+     * @return the JavaFX node to remove.
+     */
+    private Node releaseNode (int i) {
+        GraphNode node = nodes[i];
+        nodes[i] = null;
+        x[i] = node.getX();
+        y[i] = node.getY();
+
+        if (nodePool.size() < MAXIMUM_POOL_SIZE)
+            nodePool.add(node);
+        return node.getBody();
+    }
+
+    /**
+     * Move the given node and its edges to the live layer and cache the
+     * rest, which won't change until the drag ends.
+     */
+    private void startLive (GraphNode node) {
+        if (liveNode != null)
+            stopLive();
+        liveNode = node;
+
+        for (GraphEdge edge : node.getInboundEdges())
+            moveToLiveLayer(edge.getEdgeGroup(), edgeLayer);
+        for (GraphEdge edge : node.getOutboundEdges())
+            moveToLiveLayer(edge.getEdgeGroup(), edgeLayer);
+        moveToLiveLayer(node.getBody(), nodeLayer);
+
+        edgeLayer.setCache(true);
+        nodeLayer.setCache(true);
+    }
+
+    private void moveToLiveLayer (Node node, Group layer) {
+        // Self loops would be moved twice...
+        if (node.getParent() == layer) {
+            layer.getChildren().remove(node);
+            liveLayer.getChildren().add(node);
+        }
+    }
+
+    /**
+     * Put the dragged node and its edges back with the rest and refresh the
+     * static layers.
+     */
+    private void stopLive () {
+        if (liveNode == null)
+            return;
+
+        // The drag is over: back to the detail of the static layers right
+        // away, instead of drafting everything until the motion settles...
+        motion.stop();
+        setLiveDetail(detail, detailZoom);
+
+        // Adding them to another group takes them out of the live layer...
+        for (Node node : liveLayer.getChildren().toArray(new Node[0]))
+            (node == liveNode.getBody() ? nodeLayer : edgeLayer).getChildren().add(node);
+        liveNode = null;
+
+        edgeLayer.setCache(false);
+        nodeLayer.setCache(false);
+        cull();
+    }
+
+    /**
+     * Stop displaying anything, pooling every GraphNode and GraphEdge.
+     */
+    private void releaseAll () {
+        if (liveNode != null) {
+            liveLayer.getChildren().clear();
+            liveNode = null;
+            edgeLayer.setCache(false);
+            nodeLayer.setCache(false);
+        }
+
+        for (int k = 0; k < shownEdgeCount; k++)
+            releaseEdge(shownEdges[k]);
+        for (int k = 0; k < shownNodeCount; k++)
+            releaseNode(shownNodes[k]);
+
+        shownEdgeCount = 0;
+        shownNodeCount = 0;
+        edgeLayer.getChildren().clear();
+        nodeLayer.getChildren().clear();
+    }
+
+    /**
+     * Nodes may have been dragged, so they know better where they are.
+     */
+    private void syncPositions () {
+        for (int k = 0; k < shownNodeCount; k++) {
+            int i = shownNodes[k];
+            x[i] = nodes[i].getX();
+            y[i] = nodes[i].getY();
+        }
+    }
+
+    private void setAttributes (GraphEdge edge, EdgeList edgeList, int e) {
+        // Default values are given by EdgeList. All values should be between 0 and 1.
+        edge.setWidth(edgeList.getAttribute(e, EdgeList.ATTR_WIDTH));
+        // the less significance the brighter...
+        edge.setStyle(styles.intern(
+                GraphEdge.scaledHue(edgeList.getAttribute(e, EdgeList.ATTR_HUE)),
+                GraphEdge.scaledBrightness(1 - edgeList.getAttribute(e, EdgeList.ATTR_BRIGHTNESS)),
+                edgeList.getAttribute(e, EdgeList.ATTR_OPACITY),
+                GraphEdge.scaledFuzziness(1 - edgeList.getAttribute(e, EdgeList.ATTR_FUZZINESS))));
+        edge.setGrain(1 - edgeList.getAttribute(e, EdgeList.ATTR_GRAIN));
+    }
+
+    @Override
+    public void setPositions (double[] x, double[] y) {
+        if (edgeList == null)
+            return;
+
+        // A dragged node stays under the mouse...
+        int live = liveNode != null ? liveNode.getId() : -1;
+        System.arraycopy(x, 0, this.x, 0, this.x.length);
+        System.arraycopy(y, 0, this.y, 0, this.y.length);
+        if (live >= 0) {
+            this.x[live] = liveNode.getX();
+            this.y[live] = liveNode.getY();
+        }
+
+        settingPositions = true;
+        for (int k = 0; k < shownNodeCount; k++) {
+            int i = shownNodes[k];
+            if (i != live)
+                nodes[i].setPosition(x[i], y[i]);
+        }
+        settingPositions = false;
+
+        indexStale = true;
+        motion.motion();
+        cull();
+        updateShownEdges();
+    }
+
+    @Override
+    public double getX (int node) {
+        return nodes[node] != null ? nodes[node].getX() : x[node];
+    }
+
+    @Override
+    public double getY (int node) {
+        return nodes[node] != null ? nodes[node].getY() : y[node];
+    }
+
+    @Override
+    public void setEdgeType (byte edgeType) {
+        this.edgeType = edgeType;
+
+        for (int k = 0; k < shownEdgeCount; k++)
+            edges[shownEdges[k]].setEdgeType(edgeType);
+
+        updateShownEdges();
+    }
+
+    @Override
+    public void clear () {
+        cullTimer.stop();
+        motion.stop();
+        releaseAll();
+
+        edgePool.clear();
+        nodePool.clear();
+        styles.clear();
+
+        setModel(null, new double[0], new double[0]);
+        parent.getChildren().remove(rootGroup);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph;
+
+import java.util.Arrays;
+import javafx.animation.AnimationTimer;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.control.Label;
+import nodegraph.perf.Instrumentation;
+
+/**
+ * Performance figures shown over the graph: node and edge counts, how many
+ * JavaFX nodes display them, layout and edge update times from
+ * Instrumentation, frames per second and percentiles of the time between
+ * pulses. Frames are only timed while the overlay is shown.
+ *
+ * @author elio
+ */
+public class StatsOverlay {
+    /**
+     * Frames kept for the percentiles, about two seconds at 60 FPS.
+     */
+    private static final int FRAMES = 120;
+
+    /**
+     * Time between text updates.
+     */
+    private static final long REFRESH_NANOS = 500_000_000L;
+
+    private final Label label;
+    private final Parent scene;
+
+    private int nodeCount;
+    private int edgeCount;
+
+    // Time between pulses, in a ring...
+    private final long[] frames = new long[FRAMES];
+    private final long[] sorted = new long[FRAMES];
+    private int frameCount;
+    private int nextFrame;
+    private long lastPulse;
+    private long lastRefresh;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            if (lastPulse > 0) {
+                frames[nextFrame] = now - lastPulse;
+                nextFrame = (nextFrame + 1) % FRAMES;
+                frameCount = Math.min(frameCount + 1, FRAMES);
+            }
+            lastPulse = now;
+
+            if (now - lastRefresh >= REFRESH_NANOS) {
+                lastRefresh = now;
+                refresh();
+            }
+        }
+    };
+
+    /**
+     * @param label where the figures are written.
+     * @param scene what the graph views display into, for counting JavaFX nodes.
+     */
+    public StatsOverlay (Label label, Parent scene) {
+        this.label = label;
+        this.scene = scene;
+        label.setVisible(false);
+        label.setMouseTransparent(true);
+    }
+
+    /**
+     * @param nodeCount nodes of the displayed graph.
+     * @param edgeCount edges of the displayed graph.
+     */
+    public void setGraph (int nodeCount, int edgeCount) {
+        this.nodeCount = nodeCount;
+        this.edgeCount = edgeCount;
+    }
+
+    public void setVisible (boolean visible) {
+        label.setVisible(visible);
+        if (visible) {
+            frameCount = 0;
+            nextFrame = 0;
+            lastPulse = 0;
+            lastRefresh = 0;
+            timer.start();
+        } else {
+            timer.stop();
+        }
+    }
+
+    private void refresh () {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Nodes: %d, edges: %d%n", nodeCount, edgeCount));
+        text.append(String.format("Scene graph nodes: %d%n", countNodes(scene)));
+        text.append(String.format("Layout iteration: %.2f ms (%d)%n",
+                Instrumentation.getLastNanos(Instrumentation.PHASE_LAYOUT_ITERATION) / 1e6,
+                Instrumentation.getCount(Instrumentation.PHASE_LAYOUT_ITERATION)));
+        text.append(String.format("Edge updates: %.2f ms, %d edges%n",
+                Instrumentation.getLastNanos(Instrumentation.PHASE_EDGE_UPDATE) / 1e6,
+                Instrumentation.getItems(Instrumentation.PHASE_EDGE_UPDATE)));
+
+        if (frameCount > 0) {
+            System.arraycopy(frames, 0, sorted, 0, frameCount);
+            Arrays.sort(sorted, 0, frameCount);
+
+            long total = 0;
+            for (int f = 0; f < frameCount; f++)
+                total += sorted[f];
+
+            text.append(String.format("FPS: %.1f%n", frameCount * 1e9 / total));
+            text.append(String.format("Pulses: p50 %.1f, p95 %.1f, p99 %.1f, max %.1f ms",
+                    percentile(50) / 1e6, percentile(95) / 1e6, percentile(99) / 1e6,
+                    sorted[frameCount - 1] / 1e6));
+        }
+
+        label.setText(text.toString());
+    }
+
+    /**
+     * @return the given percentile of the sorted frame times.
+     */
+    private long percentile (int p) {
+        return sorted[Math.min(frameCount - 1, frameCount * p / 100)];
+    }
+
+    private static int countNodes (Node node) {
+        int count = 1;
+        if (node instanceof Parent)
+            for (Node child : ((Parent)node).getChildrenUnmodifiable())
+                count += countNodes(child);
+        return count;
+    }
+}
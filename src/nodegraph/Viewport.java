@@ -0,0 +1,162 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph;
+
+import javafx.beans.InvalidationListener;
+import javafx.event.EventHandler;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.transform.Scale;
+import javafx.scene.transform.Translate;
+
+/**
+ * Zoom and pan of the pane where a graph is displayed.
+ * Scrolling zooms around the mouse and dragging the background pans.
+ * Graph coordinates are turned into pane coordinates by the translate and
+ * scale transforms, in that order: pane = translate + zoom * graph.
+ *
+ * @author elio
+ */
+public class Viewport {
+    public static final double
+            MINIMUM_ZOOM = 0.01,
+            MAXIMUM_ZOOM = 10,
+            ZOOM_STEP = 1.1;
+
+    private final Pane pane;
+    private final Translate translate = new Translate();
+    private final Scale scale = new Scale();
+
+    // Last mouse position while panning...
+    private double panX;
+    private double panY;
+
+    public Viewport (Pane pane) {
+        this.pane = pane;
+
+        // Zoomed in graphs shouldn't cover whatever is around the pane...
+        Rectangle clip = new Rectangle();
+        clip.widthProperty().bind(pane.widthProperty());
+        clip.heightProperty().bind(pane.heightProperty());
+        pane.setClip(clip);
+
+        pane.addEventHandler(ScrollEvent.SCROLL, new EventHandler<ScrollEvent>() {
+            @Override
+            public void handle(ScrollEvent event) {
+                if (event.getDeltaY() == 0)
+                    return;
+
+                double factor = event.getDeltaY() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP;
+                zoom(factor, event.getX(), event.getY());
+                event.consume();
+            }
+        });
+
+        // Nodes consume their own mouse events, so these are for the background...
+        pane.addEventHandler(MouseEvent.MOUSE_PRESSED, new EventHandler<MouseEvent>() {
+            @Override
+            public void handle(MouseEvent event) {
+                panX = event.getSceneX();
+                panY = event.getSceneY();
+            }
+        });
+        pane.addEventHandler(MouseEvent.MOUSE_DRAGGED, new EventHandler<MouseEvent>() {
+            @Override
+            public void handle(MouseEvent event) {
+                translate.setX(translate.getX() + event.getSceneX() - panX);
+                translate.setY(translate.getY() + event.getSceneY() - panY);
+                panX = event.getSceneX();
+                panY = event.getSceneY();
+            }
+        });
+    }
+
+    /**
+     * Zoom by the given factor keeping (x, y), in pane coordinates, in place.
+     */
+    public void zoom (double factor, double x, double y) {
+        double zoom = Math.max(MINIMUM_ZOOM, Math.min(MAXIMUM_ZOOM, getZoom() * factor));
+        double graphX = toGraphX(x);
+        double graphY = toGraphY(y);
+
+        scale.setX(zoom);
+        scale.setY(zoom);
+        translate.setX(x - graphX * zoom);
+        translate.setY(y - graphY * zoom);
+    }
+
+    /**
+     * Go back to no zoom and no pan.
+     */
+    public void reset () {
+        scale.setX(1);
+        scale.setY(1);
+        translate.setX(0);
+        translate.setY(0);
+    }
+
+    public double getZoom () {
+        return scale.getX();
+    }
+
+    public double getTranslateX () {
+        return translate.getX();
+    }
+
+    public double getTranslateY () {
+        return translate.getY();
+    }
+
+    public double toGraphX (double x) {
+        return (x - translate.getX()) / getZoom();
+    }
+
+    public double toGraphY (double y) {
+        return (y - translate.getY()) / getZoom();
+    }
+
+    // Visible part of the graph...
+
+    public double getLeft () {
+        return toGraphX(0);
+    }
+
+    public double getTop () {
+        return toGraphY(0);
+    }
+
+    public double getRight () {
+        return toGraphX(pane.getWidth());
+    }
+
+    public double getBottom () {
+        return toGraphY(pane.getHeight());
+    }
+
+    /**
+     * @return the transforms to apply to whatever displays the graph.
+     */
+    public Translate getTranslate () {
+        return translate;
+    }
+
+    public Scale getScale () {
+        return scale;
+    }
+
+    /**
+     * Be notified whenever the visible part of the graph changes.
+     */
+    public void addListener (InvalidationListener listener) {
+        translate.xProperty().addListener(listener);
+        translate.yProperty().addListener(listener);
+        scale.xProperty().addListener(listener);
+        pane.widthProperty().addListener(listener);
+        pane.heightProperty().addListener(listener);
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.cli;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import nodegraph.io.EdgeList;
+import nodegraph.io.EdgeListParser;
+import nodegraph.io.GraphFile;
+import nodegraph.io.MappedEdgeListReader;
+import nodegraph.io.ParseError;
+import nodegraph.layout.FruchtermanReingold;
+import nodegraph.layout.LayoutGraph;
+import nodegraph.layout.LayoutSettings;
+import nodegraph.render.EdgeAttributes;
+import nodegraph.render.EdgeGeometry;
+
+/**
+ * Lays edge lists out without JavaFX, e.g. in pipelines on servers without
+ * a display, the same way "Place" does:
+ * <pre>
+ * java -cp NodeGraph.jar nodegraph.cli.BatchLayout [options] [file...]
+ * </pre>
+ * Every file is laid out and written to the output directory, as
+ * name.json, name.csv, name.svg and/or name.ngraph (see GraphFile).
+ * Without files the edge list is read from stdin and written to stdout, in
+ * a single format. See USAGE for the options.
+ *
+ * @author elio
+ */
+public class BatchLayout {
+    public static final String USAGE =
+            "Usage: BatchLayout [options] [file...]\n"
+            + "Lays out edge lists read from the files, or from stdin if there are none.\n"
+            + "  --format=json        json, csv, svg and/or ngraph, comma separated (one only for stdin)\n"
+            + "  --out=.              directory for name.json, name.csv, name.svg and name.ngraph\n"
+            + "  --iterations=500     maximum layout iterations\n"
+            + "  --threads=1          threads used by each layout\n"
+            + "  --jobs=1             files laid out in parallel\n"
+            + "  --seed=1             seed of multilevel layouts and Pivot MDS, only valid with those\n"
+            + "  --multilevel         multilevel layout, for big graphs\n"
+            + "  --placement=circle   initial placement: circle or mds\n"
+            + "  --repulsion=auto     auto, exact or barnes-hut\n"
+            + "  --theta=0.8          Barnes-Hut theta, lower is more accurate but slower\n"
+            + "  --width=1000         width of the layout area\n"
+            + "  --height=1000        height of the layout area\n"
+            + "  --edge-type=tapered  tapered or arrowed, for svg\n"
+            + "  --color=0000ff       edge color as RRGGBB, for svg\n";
+
+    public static final String[] FORMATS = {"json", "csv", "svg", GraphFile.EXTENSION};
+    public static final byte
+            FORMAT_JSON = 0,
+            FORMAT_CSV = 1,
+            FORMAT_SVG = 2,
+            FORMAT_GRAPH_FILE = 3;
+
+    /**
+     * Names of LayoutSettings.PLACEMENTS.
+     */
+    public static final String[] PLACEMENTS = {"circle", "mds"};
+
+    public static final String[] REPULSION_TYPES = {"auto", "exact", "barnes-hut"};
+    public static final String[] EDGE_TYPES = {"tapered", "arrowed"};
+
+    public static final double DEFAULT_SIZE = 1000;
+
+    /**
+     * Parse errors printed per graph, the rest are only counted.
+     */
+    private static final int MAX_PRINTED_ERRORS = 10;
+
+    private boolean[] formats = new boolean[FORMATS.length];
+    private File out = new File(".");
+    private int iterations = LayoutSettings.DEFAULT_MAX_ITERATIONS;
+    private int threads = 1;
+    private int jobs = 1;
+    private long seed = LayoutSettings.DEFAULT_SEED;
+    private boolean seedSet;
+    private boolean multilevel;
+    private int placement = LayoutSettings.PLACEMENT_CIRCLE;
+    private byte repulsion = FruchtermanReingold.REPULSION_AUTO;
+    private double theta = FruchtermanReingold.DEFAULT_THETA;
+    private double width = DEFAULT_SIZE;
+    private double height = DEFAULT_SIZE;
+    private byte edgeType = EdgeGeometry.TYPE_TAPERED;
+    private int color = 0x0000ff;
+
+    public static void main (String[] args) {
+        BatchLayout batch = new BatchLayout();
+        List<String> files = new ArrayList<>();
+
+        try {
+            for (String arg : args) {
+                if (arg.equals("--help") || arg.equals("-h")) {
+                    System.out.print(USAGE);
+                    return;
+                } else if (arg.startsWith("--")) {
+                    batch.setOption(arg.substring(2));
+                } else {
+                    files.add(arg);
+                }
+            }
+            if (files.isEmpty() && batch.getFormatCount() > 1)
+                throw new IllegalArgumentException("Only one format can be written to stdout");
+            batch.checkOptions();
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+
+        boolean ok = files.isEmpty() ? batch.runStdin() : batch.runFiles(files);
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * @param option name=value, or just the name for flags.
+     */
+    public void setOption (String option) {
+        int equals = option.indexOf('=');
+        String name = equals < 0 ? option : option.substring(0, equals);
+        String value = equals < 0 ? "" : option.substring(equals + 1);
+
+        try {
+            switch (name) {
+                case "format":
+                    formats = new boolean[FORMATS.length];
+                    for (String format : value.split(","))
+                        formats[indexOf(FORMATS, format.trim(), name)] = true;
+                    break;
+                case "out": out = new File(value); break;
+                case "iterations": iterations = Math.max(1, Integer.parseInt(value)); break;
+                case "threads": threads = Math.max(1, Integer.parseInt(value)); break;
+                case "jobs": jobs = Math.max(1, Integer.parseInt(value)); break;
+                case "seed":
+                    seed = Long.parseLong(value);
+                    seedSet = true;
+                    break;
+                case "multilevel": multilevel = value.isEmpty() || Boolean.parseBoolean(value); break;
+                case "placement": placement = indexOf(PLACEMENTS, value, name); break;
+                case "repulsion": repulsion = (byte)indexOf(REPULSION_TYPES, value, name); break;
+                case "theta":
+                    theta = Double.parseDouble(value);
+                    if (!(theta > 0))
+                        throw new NumberFormatException();
+                    break;
+                case "width": width = Double.parseDouble(value); break;
+                case "height": height = Double.parseDouble(value); break;
+                case "edge-type": edgeType = (byte)indexOf(EDGE_TYPES, value, name); break;
+                case "color": color = Integer.parseInt(value.startsWith("#") ? value.substring(1) : value, 16); break;
+                default: throw new IllegalArgumentException("Unknown option --" + name);
+            }
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid value for --" + name + ": " + value);
+        }
+    }
+
+    /**
+     * Check options which only make sense together, once they are all set.
+     */
+    public void checkOptions () {
+        if (seedSet && !newLayoutSettings().usesSeed())
+            throw new IllegalArgumentException("--seed only applies to --multilevel or --placement=mds");
+    }
+
+    private static int indexOf (String[] values, String value, String option) {
+        for (int i = 0; i < values.length; i++)
+            if (values[i].equalsIgnoreCase(value))
+                return i;
+        throw new IllegalArgumentException("Invalid value for --" + option + ": " + value);
+    }
+
+    private int getFormatCount () {
+        int count = 0;
+        for (boolean format : formats)
+            if (format)
+                count++;
+        return count;
+    }
+
+    /**
+     * Lay out the edge list from stdin and write it to stdout.
+     * @return false if it failed.
+     */
+    public boolean runStdin () {
+        try {
+            EdgeList edgeList = new EdgeListParser().parse(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            printErrors("stdin", edgeList);
+            LayoutGraph graph = layout(edgeList);
+
+            for (byte format = 0; format < FORMATS.length; format++)
+                if (isFormat(format))
+                    write(format, edgeList, graph, System.out);
+            System.out.flush();
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("stdin: " + ex);
+            return false;
+        }
+    }
+
+    /**
+     * Lay every file out, up to jobs at a time, and write them to the
+     * output directory.
+     * @return false if any of them failed.
+     */
+    public boolean runFiles (List<String> files) {
+        if (!out.isDirectory() && !out.mkdirs()) {
+            System.err.println("Can't create " + out);
+            return false;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(jobs, files.size()));
+        List<Future<Boolean>> results = new ArrayList<>(files.size());
+        for (final String file : files) {
+            results.add(pool.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return runFile(Paths.get(file));
+                }
+            }));
+        }
+
+        boolean ok = true;
+        try {
+            for (Future<Boolean> result : results)
+                ok &= result.get();
+        } catch (InterruptedException | ExecutionException ex) {
+            System.err.println(ex);
+            ok = false;
+        } finally {
+            pool.shutdownNow();
+        }
+        return ok;
+    }
+
+    private boolean runFile (Path file) {
+        try {
+            EdgeList edgeList = new MappedEdgeListReader(threads).read(file);
+            printErrors(file.toString(), edgeList);
+            LayoutGraph graph = layout(edgeList);
+
+            String name = file.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            if (dot > 0)
+                name = name.substring(0, dot);
+
+            for (byte format = 0; format < FORMATS.length; format++) {
+                if (!isFormat(format))
+                    continue;
+
+                Path output = out.toPath().resolve(name + "." + FORMATS[format]);
+                try (OutputStream stream = Files.newOutputStream(output)) {
+                    write(format, edgeList, graph, stream);
+                }
+            }
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            System.err.println(file + ": " + ex);
+            return false;
+        }
+    }
+
+    /**
+     * @return true if format is asked for, JSON being the default.
+     */
+    private boolean isFormat (byte format) {
+        return formats[format] || (format == FORMAT_JSON && getFormatCount() == 0);
+    }
+
+    private void write (byte format, EdgeList edgeList, LayoutGraph graph, OutputStream stream) throws IOException {
+        if (format == FORMAT_GRAPH_FILE) {
+            double[] x = new double[graph.getNodeCount()];
+            double[] y = new double[graph.getNodeCount()];
+            for (int i = 0; i < x.length; i++) {
+                x[i] = graph.getX(i);
+                y[i] = graph.getY(i);
+            }
+            new GraphFile(edgeList, x, y).write(Channels.newChannel(stream));
+            return;
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+        if (format == FORMAT_JSON) {
+            PositionWriter.writeJson(edgeList.getLabels(), graph, writer);
+        } else if (format == FORMAT_CSV) {
+            PositionWriter.writeCsv(edgeList.getLabels(), graph, writer);
+        } else {
+            SvgWriter svg = new SvgWriter();
+            svg.setEdgeType(edgeType);
+            svg.setColor(color);
+            svg.write(edgeList, graph, writer);
+        }
+        writer.flush();
+    }
+
+    private static void printErrors (String name, EdgeList edgeList) {
+        List<ParseError> errors = edgeList.getErrors();
+        for (int i = 0; i < Math.min(errors.size(), MAX_PRINTED_ERRORS); i++)
+            System.err.println(name + ":" + errors.get(i).getLine() + ": " + errors.get(i).getMessage());
+        if (edgeList.getErrorCount() > MAX_PRINTED_ERRORS)
+            System.err.println(name + ": " + (edgeList.getErrorCount() - MAX_PRINTED_ERRORS) + " more errors");
+    }
+
+    /**
+     * Place and lay the graph out, as "Place" does with the same settings.
+     * @return the graph, with its final positions.
+     */
+    public LayoutGraph layout (EdgeList edgeList) {
+        LayoutGraph graph = new LayoutGraph(edgeList.getNodeCount(), edgeList.getEdgeCount());
+        for (int i = 0; i < edgeList.getNodeCount(); i++)
+            graph.addNode();
+        for (int e = 0; e < edgeList.getEdgeCount(); e++)
+            graph.addEdge(edgeList.getSource(e), edgeList.getTarget(e));
+
+        newLayoutSettings().run(graph);
+        return graph;
+    }
+
+    private LayoutSettings newLayoutSettings () {
+        LayoutSettings settings = new LayoutSettings(width, height);
+        settings.setPlacement(placement);
+        settings.setMultilevel(multilevel);
+        settings.setMargin(EdgeAttributes.NODE_RADIUS);
+        settings.setTheta(theta);
+        settings.setRepulsion(repulsion);
+        settings.setParallelism(threads);
+        settings.setMaxIterations(iterations);
+        settings.setSeed(seed);
+        return settings;
+    }
+}
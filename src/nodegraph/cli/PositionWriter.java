@@ -0,0 +1,100 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.cli;
+
+import java.io.IOException;
+import java.io.Writer;
+import nodegraph.io.LabelIndex;
+import nodegraph.layout.LayoutGraph;
+
+/**
+ * Node positions as JSON:
+ * <pre>
+ * {"nodes": [{"label": "A", "x": 12.5, "y": 40.25}, ...]}
+ * </pre>
+ * or as CSV, with a "label,x,y" header. Nodes come in input order.
+ *
+ * @author elio
+ */
+public final class PositionWriter {
+    /**
+     * Positions are rounded to this many decimals.
+     */
+    private static final double PRECISION = 1000;
+
+    private PositionWriter () {
+    }
+
+    public static void writeJson (LabelIndex labels, LayoutGraph graph, Writer out) throws IOException {
+        out.write("{\"nodes\": [");
+        for (int i = 0; i < graph.getNodeCount(); i++) {
+            out.write(i == 0 ? "\n" : ",\n");
+            out.write("  {\"label\": ");
+            writeJsonString(labels.getLabel(i), out);
+            out.write(", \"x\": ");
+            out.write(number(graph.getX(i)));
+            out.write(", \"y\": ");
+            out.write(number(graph.getY(i)));
+            out.write('}');
+        }
+        out.write("\n]}\n");
+    }
+
+    public static void writeCsv (LabelIndex labels, LayoutGraph graph, Writer out) throws IOException {
+        out.write("label,x,y\n");
+        for (int i = 0; i < graph.getNodeCount(); i++) {
+            writeCsvField(labels.getLabel(i), out);
+            out.write(',');
+            out.write(number(graph.getX(i)));
+            out.write(',');
+            out.write(number(graph.getY(i)));
+            out.write('\n');
+        }
+    }
+
+    /**
+     * @return the value rounded to PRECISION, without a trailing ".0".
+     */
+    static String number (double value) {
+        double rounded = Math.round(value * PRECISION) / PRECISION;
+        if (rounded == (long)rounded)
+            return Long.toString((long)rounded);
+        return Double.toString(rounded);
+    }
+
+    private static void writeJsonString (String s, Writer out) throws IOException {
+        out.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < ' ') {
+                out.write(String.format("\\u%04x", (int)c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+
+    private static void writeCsvField (String s, Writer out) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (!quote) {
+            out.write(s);
+            return;
+        }
+
+        out.write('"');
+        out.write(s.replace("\"", "\"\""));
+        out.write('"');
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.cli;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import nodegraph.io.EdgeList;
+import nodegraph.layout.LayoutGraph;
+import nodegraph.render.EdgeAttributes;
+import nodegraph.render.EdgeGeometry;
+
+/**
+ * Draws a placed graph as SVG, the way CanvasGraphView draws it at full
+ * detail: edge outlines from EdgeGeometry with their color, opacity,
+ * fuzziness (as a Gaussian blur) and grain, then nodes with their labels.
+ *
+ * @author elio
+ */
+public class SvgWriter {
+    /**
+     * Space around the drawing.
+     */
+    private static final double MARGIN = 20;
+
+    private static final String LABEL_STYLE = "font-family: Verdana; font-weight: bold; font-size: 36px";
+
+    private byte edgeType = EdgeGeometry.TYPE_TAPERED;
+    private int color = 0x0000ff;
+
+    private final double[] outline = new double[EdgeGeometry.OUTLINE_STRIDE];
+    private double[] dashes = new double[64];
+
+    /**
+     * One blur filter per fuzziness in use, named after its index.
+     */
+    private final Map<Double, Integer> filterIds = new HashMap<>();
+
+    public void setEdgeType (byte edgeType) {
+        this.edgeType = edgeType;
+    }
+
+    /**
+     * @param color base edge color, as 0xRRGGBB.
+     */
+    public void setColor (int color) {
+        this.color = color;
+    }
+
+    public void write (EdgeList edgeList, LayoutGraph graph, Writer out) throws IOException {
+        int n = graph.getNodeCount();
+        double r = EdgeAttributes.NODE_RADIUS;
+        double left = 0, top = 0, right = 0, bottom = 0;
+        for (int i = 0; i < n; i++) {
+            double x = graph.getX(i);
+            double y = graph.getY(i);
+            if (i == 0 || x < left)
+                left = x;
+            if (i == 0 || x > right)
+                right = x;
+            if (i == 0 || y < top)
+                top = y;
+            if (i == 0 || y > bottom)
+                bottom = y;
+        }
+        left -= r + MARGIN;
+        top -= r + MARGIN;
+        right += r + MARGIN;
+        bottom += r + MARGIN;
+
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"" + number(left) + " " + number(top)
+                + " " + number(right - left) + " " + number(bottom - top) + "\" width=\"" + number(right - left)
+                + "\" height=\"" + number(bottom - top) + "\">\n");
+        out.write("<rect x=\"" + number(left) + "\" y=\"" + number(top) + "\" width=\"" + number(right - left)
+                + "\" height=\"" + number(bottom - top) + "\" fill=\"#ffffff\"/>\n");
+
+        writeFilters(edgeList, out);
+
+        out.write("<g stroke-linecap=\"round\" stroke-linejoin=\"miter\">\n");
+        for (int e = 0; e < edgeList.getEdgeCount(); e++)
+            writeEdge(edgeList, graph, e, out);
+        out.write("</g>\n");
+
+        out.write("<g fill=\"#ffffff\" stroke=\"#000000\">\n");
+        for (int i = 0; i < n; i++)
+            out.write("<circle cx=\"" + number(graph.getX(i)) + "\" cy=\"" + number(graph.getY(i))
+                    + "\" r=\"" + number(r) + "\"/>\n");
+        out.write("</g>\n");
+
+        out.write("<g fill=\"#000000\" style=\"" + LABEL_STYLE + "\" dominant-baseline=\"hanging\">\n");
+        for (int i = 0; i < n; i++) {
+            String label = edgeList.getLabels().getLabel(i);
+            out.write("<text x=\"" + number(graph.getX(i) - label.length() * 12) + "\" y=\""
+                    + number(graph.getY(i) - 22) + "\">");
+            out.write(escape(label));
+            out.write("</text>\n");
+        }
+        out.write("</g>\n");
+        out.write("</svg>\n");
+    }
+
+    private void writeFilters (EdgeList edgeList, Writer out) throws IOException {
+        filterIds.clear();
+        for (int e = 0; e < edgeList.getEdgeCount(); e++) {
+            double fuzziness = fuzziness(edgeList, e);
+            if (fuzziness <= 0 || filterIds.containsKey(fuzziness))
+                continue;
+
+            int id = filterIds.size();
+            filterIds.put(fuzziness, id);
+            if (id == 0)
+                out.write("<defs>\n");
+
+            // A 3 pass box blur is close to a Gaussian of half its size...
+            out.write("<filter id=\"f" + id + "\" x=\"-50%\" y=\"-50%\" width=\"200%\" height=\"200%\">"
+                    + "<feGaussianBlur stdDeviation=\"" + number(fuzziness / 2) + "\"/></filter>\n");
+        }
+        if (!filterIds.isEmpty())
+            out.write("</defs>\n");
+    }
+
+    private void writeEdge (EdgeList edgeList, LayoutGraph graph, int e, Writer out) throws IOException {
+        int s = edgeList.getSource(e);
+        int t = edgeList.getTarget(e);
+        byte direction = edgeList.getDirection(e);
+        double width = EdgeAttributes.scaledWidth(edgeList.getAttribute(e, EdgeList.ATTR_WIDTH), edgeType);
+        double fuzziness = fuzziness(edgeList, e);
+        double grain = EdgeAttributes.scaledGrain(1 - edgeList.getAttribute(e, EdgeList.ATTR_GRAIN));
+        String paint = paint(EdgeAttributes.adjust(color,
+                EdgeAttributes.scaledHue(edgeList.getAttribute(e, EdgeList.ATTR_HUE)),
+                EdgeAttributes.scaledBrightness(1 - edgeList.getAttribute(e, EdgeList.ATTR_BRIGHTNESS))));
+
+        int vertices = EdgeGeometry.outline(direction, edgeType, graph.getX(s), graph.getY(s),
+                graph.getX(t), graph.getY(t), EdgeAttributes.NODE_RADIUS, width, outline, 0);
+
+        out.write("<g opacity=\"" + number(edgeList.getAttribute(e, EdgeList.ATTR_OPACITY)) + "\"");
+        if (fuzziness > 0)
+            out.write(" filter=\"url(#f" + filterIds.get(fuzziness) + ")\"");
+        out.write(" fill=\"" + paint + "\" stroke=\"" + paint + "\">");
+
+        if (vertices == EdgeGeometry.LINE_VERTICES) {
+            out.write("<line x1=\"" + number(outline[0]) + "\" y1=\"" + number(outline[1])
+                    + "\" x2=\"" + number(outline[2]) + "\" y2=\"" + number(outline[3]) + "\"/></g>\n");
+            return;
+        }
+
+        int count = EdgeGeometry.dashes(direction, edgeType, outline, 0, grain);
+        if (count == 0) {
+            writePolygon(0, vertices, "", out);
+            out.write("</g>\n");
+            return;
+        }
+
+        // Grain: only dashes across the edge are visible...
+        if (dashes.length < count * 4)
+            dashes = new double[count * 4];
+        EdgeGeometry.dashes(direction, edgeType, outline, 0, grain, dashes, 0);
+
+        out.write("<clipPath id=\"c" + e + "\">");
+        writePolygon(0, vertices, "", out);
+        out.write("</clipPath><g clip-path=\"url(#c" + e + ")\" stroke-width=\"" + number(grain) + "\">");
+        for (int d = 0; d < count; d++)
+            out.write("<line x1=\"" + number(dashes[d * 4]) + "\" y1=\"" + number(dashes[d * 4 + 1])
+                    + "\" x2=\"" + number(dashes[d * 4 + 2]) + "\" y2=\"" + number(dashes[d * 4 + 3]) + "\"/>");
+        out.write("</g>");
+
+        // ... except for the head of the arrow.
+        if (edgeType == EdgeGeometry.TYPE_ARROWED)
+            writePolygon(2, 3, " stroke=\"none\"", out);
+        out.write("</g>\n");
+    }
+
+    /**
+     * Write outline vertices [from, from + count) as a polygon.
+     */
+    private void writePolygon (int from, int count, String attributes, Writer out) throws IOException {
+        out.write("<polygon points=\"");
+        for (int v = from; v < from + count; v++) {
+            if (v > from)
+                out.write(' ');
+            out.write(number(outline[v * 2]));
+            out.write(',');
+            out.write(number(outline[v * 2 + 1]));
+        }
+        out.write("\"" + attributes + "/>");
+    }
+
+    private static double fuzziness (EdgeList edgeList, int e) {
+        return EdgeAttributes.scaledFuzziness(1 - edgeList.getAttribute(e, EdgeList.ATTR_FUZZINESS));
+    }
+
+    private static String paint (int rgb) {
+        return String.format("#%06x", rgb);
+    }
+
+    private static String number (double value) {
+        return PositionWriter.number(value);
+    }
+
+    private static String escape (String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parsed edge list: node labels plus edge endpoints, directions and
+ * attributes, all kept in flat arrays. Attribute values are stored as
+ * written in the input (or their defaults), from 0.0 to 1.0.
+ *
+ * @author elio
+ */
+public class EdgeList {
+    /**
+     * Same values as the GraphEdge directions.
+     */
+    public static final byte
+            DIRECTION_NONE = 0,
+            DIRECTION_ONEWAY = 1,
+            DIRECTION_BOTHWAYS = 2;
+
+    /**
+     * Attribute names (as used in the input) and their indices.
+     */
+    public static final char[] ATTRIBUTES = {'w', 'h', 'b', 'o', 'f', 'g'};
+    public static final int
+            ATTR_WIDTH = 0,
+            ATTR_HUE = 1,
+            ATTR_BRIGHTNESS = 2,
+            ATTR_OPACITY = 3,
+            ATTR_FUZZINESS = 4,
+            ATTR_GRAIN = 5;
+
+    /**
+     * Values used when an attribute is not given.
+     * A negative width means the default width of the edge type.
+     */
+    public static final double[] DEFAULTS = {-1, 0.0, 1.0, 1.0, 1.0, 1.0};
+
+    /**
+     * Errors beyond this amount are counted but not kept.
+     */
+    public static final int MAX_ERRORS = 100;
+
+    private final LabelIndex labels;
+
+    private int edgeCount;
+    private int[] source;
+    private int[] target;
+    private byte[] direction;
+
+    /**
+     * Edge attributes, ATTRIBUTES.length values per edge.
+     */
+    private double[] attributes;
+
+    private int lineCount;
+    private int errorCount;
+    private final List<ParseError> errors = new ArrayList<>();
+
+    public EdgeList () {
+        this(new LabelIndex(), 16);
+    }
+
+    public EdgeList (LabelIndex labels, int edgeCapacity) {
+        this.labels = labels;
+        edgeCapacity = Math.max(edgeCapacity, 1);
+        source = new int[edgeCapacity];
+        target = new int[edgeCapacity];
+        direction = new byte[edgeCapacity];
+        attributes = new double[edgeCapacity * ATTRIBUTES.length];
+    }
+
+    /**
+     * Edge list over the given arrays, which are used as they are (see
+     * GraphFile). Arrays need room for at least one edge.
+     */
+    EdgeList (LabelIndex labels, int edgeCount, int[] source, int[] target, byte[] direction, double[] attributes) {
+        this.labels = labels;
+        this.edgeCount = edgeCount;
+        this.source = source;
+        this.target = target;
+        this.direction = direction;
+        this.attributes = attributes;
+    }
+
+    /**
+     * Add an edge with default attributes.
+     * @return the index of the new edge.
+     */
+    public int addEdge (int from, int to, byte dir) {
+        if (edgeCount == source.length) {
+            int capacity = edgeCount * 2;
+            source = Arrays.copyOf(source, capacity);
+            target = Arrays.copyOf(target, capacity);
+            direction = Arrays.copyOf(direction, capacity);
+            attributes = Arrays.copyOf(attributes, capacity * ATTRIBUTES.length);
+        }
+
+        source[edgeCount] = from;
+        target[edgeCount] = to;
+        direction[edgeCount] = dir;
+        System.arraycopy(DEFAULTS, 0, attributes, edgeCount * ATTRIBUTES.length, ATTRIBUTES.length);
+        return edgeCount++;
+    }
+
+    public void setAttribute (int edge, int attribute, double value) {
+        attributes[edge * ATTRIBUTES.length + attribute] = value;
+    }
+
+    public double getAttribute (int edge, int attribute) {
+        return attributes[edge * ATTRIBUTES.length + attribute];
+    }
+
+    /**
+     * Append the nodes and edges of other, as if its lines came right after
+     * the ones already read.
+     */
+    void append (EdgeList other) {
+        int[] nodeMap = new int[other.getNodeCount()];
+        for (int i = 0; i < nodeMap.length; i++)
+            nodeMap[i] = labels.getOrAdd(other.labels.getLabel(i));
+
+        for (int e = 0; e < other.edgeCount; e++) {
+            int edge = addEdge(nodeMap[other.source[e]], nodeMap[other.target[e]], other.direction[e]);
+            System.arraycopy(other.attributes, e * ATTRIBUTES.length, attributes, edge * ATTRIBUTES.length, ATTRIBUTES.length);
+        }
+
+        for (ParseError error : other.errors)
+            addError(new ParseError(lineCount + error.getLine(), error.getMessage()));
+        errorCount += other.errorCount - other.errors.size();
+        lineCount += other.lineCount;
+    }
+
+    void addError (ParseError error) {
+        if (errors.size() < MAX_ERRORS)
+            errors.add(error);
+        errorCount++;
+    }
+
+    void setLineCount (int lineCount) {
+        this.lineCount = lineCount;
+    }
+
+    /**
+     * @return the node labels, indexed by node.
+     */
+    public LabelIndex getLabels () {
+        return labels;
+    }
+
+    public int getNodeCount () {
+        return labels.size();
+    }
+
+    public int getEdgeCount () {
+        return edgeCount;
+    }
+
+    public int getSource (int edge) {
+        return source[edge];
+    }
+
+    public int getTarget (int edge) {
+        return target[edge];
+    }
+
+    public byte getDirection (int edge) {
+        return direction[edge];
+    }
+
+    /**
+     * @return the amount of lines read.
+     */
+    public int getLineCount () {
+        return lineCount;
+    }
+
+    /**
+     * @return the amount of errors found, which may be more than getErrors().size().
+     */
+    public int getErrorCount () {
+        return errorCount;
+    }
+
+    /**
+     * @return the first MAX_ERRORS errors.
+     */
+    public List<ParseError> getErrors () {
+        return errors;
+    }
+}
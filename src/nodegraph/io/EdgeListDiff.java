@@ -0,0 +1,148 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.io;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Differences between two edge lists.
+ * Nodes are matched by label (case insensitive) and edges by endpoints and
+ * direction, so that whatever displays the first one can be turned into
+ * the second one by only adding and removing what changed.
+ *
+ * @author elio
+ */
+public class EdgeListDiff {
+    /**
+     * Node index in before of every node in after, or -1 if it's new.
+     */
+    private final int[] previousNode;
+
+    /**
+     * Edge index in before of every edge in after, or -1 if it's new.
+     */
+    private final int[] previousEdge;
+
+    /**
+     * True for every edge in before which is not in after.
+     */
+    private final boolean[] removedEdge;
+
+    /**
+     * True for every node in after which is new or gained or lost edges.
+     */
+    private final boolean[] changed;
+
+    public EdgeListDiff (EdgeList before, EdgeList after) {
+        int n = after.getNodeCount();
+        previousNode = new int[n];
+        previousEdge = new int[after.getEdgeCount()];
+        removedEdge = new boolean[before.getEdgeCount()];
+        changed = new boolean[n];
+
+        // Node index in after of every node in before...
+        int[] nodeMap = new int[before.getNodeCount()];
+        Arrays.fill(previousNode, -1);
+        for (int i = 0; i < nodeMap.length; i++) {
+            nodeMap[i] = after.getLabels().get(before.getLabels().getLabel(i));
+            if (nodeMap[i] >= 0)
+                previousNode[nodeMap[i]] = i;
+        }
+
+        for (int i = 0; i < n; i++)
+            changed[i] = previousNode[i] < 0;
+
+        // Edges in before by endpoints (as nodes in after)...
+        HashMap<Long, ArrayDeque<Integer>> edges = new HashMap<>();
+        for (int e = 0; e < before.getEdgeCount(); e++) {
+            int s = nodeMap[before.getSource(e)];
+            int t = nodeMap[before.getTarget(e)];
+            removedEdge[e] = true;
+
+            if (s >= 0 && t >= 0) {
+                Long key = key(s, t);
+                if (!edges.containsKey(key))
+                    edges.put(key, new ArrayDeque<Integer>());
+                edges.get(key).add(e);
+            }
+        }
+
+        for (int e = 0; e < after.getEdgeCount(); e++) {
+            int s = after.getSource(e);
+            int t = after.getTarget(e);
+            ArrayDeque<Integer> candidates = edges.get(key(s, t));
+            previousEdge[e] = -1;
+
+            if (candidates != null)
+                for (Integer candidate : candidates)
+                    if (before.getDirection(candidate) == after.getDirection(e)) {
+                        previousEdge[e] = candidate;
+                        removedEdge[candidate] = false;
+                        candidates.remove(candidate);
+                        break;
+                    }
+
+            if (previousEdge[e] < 0) {
+                changed[s] = true;
+                changed[t] = true;
+            }
+        }
+
+        // Nodes which lost edges...
+        for (int e = 0; e < removedEdge.length; e++) {
+            if (!removedEdge[e])
+                continue;
+
+            int s = nodeMap[before.getSource(e)];
+            int t = nodeMap[before.getTarget(e)];
+            if (s >= 0)
+                changed[s] = true;
+            if (t >= 0)
+                changed[t] = true;
+        }
+    }
+
+    private static Long key (int source, int target) {
+        return ((long)source << 32) | (target & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the index in before of the given node in after, or -1 if it's new.
+     */
+    public int getPreviousNode (int node) {
+        return previousNode[node];
+    }
+
+    /**
+     * @return the index in before of the given edge in after, or -1 if it's new.
+     */
+    public int getPreviousEdge (int edge) {
+        return previousEdge[edge];
+    }
+
+    /**
+     * @return true if the given edge in before is not in after.
+     */
+    public boolean isRemovedEdge (int edge) {
+        return removedEdge[edge];
+    }
+
+    /**
+     * @return true if the given node in after is new.
+     */
+    public boolean isCreated (int node) {
+        return previousNode[node] < 0;
+    }
+
+    /**
+     * @return true for every node in after which is new or gained or lost edges.
+     */
+    public boolean[] getChanged () {
+        return changed;
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Streaming parser for edge lists such as:
+ * <pre>
+ * A
+ * B-C h=0.3 b=0.7
+ * C&gt;D w=0.8
+ * D&lt;&gt;A
+ * </pre>
+ * Lines are scanned in place: no String is created per line or token, and
+ * labels are interned through a LabelIndex. Malformed lines or attributes
+ * are reported as ParseErrors instead of stopping the parsing: that
+ * includes attribute values outside 0.0 to 1.0 and lines with more than one
+ * operator, such as "A-B-C", which would otherwise be read as an edge to a
+ * node named "B-C".
+ *
+ * @author elio
+ */
+public class EdgeListParser {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Powers of ten which are exactly representable as doubles.
+     */
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private final EdgeList edgeList;
+    private final LabelIndex labels;
+
+    /**
+     * Number of the last line parsed.
+     */
+    private int line;
+
+    public EdgeListParser () {
+        this(new EdgeList());
+    }
+
+    /**
+     * @param edgeList where parsed nodes and edges are added.
+     */
+    public EdgeListParser (EdgeList edgeList) {
+        this.edgeList = edgeList;
+        this.labels = edgeList.getLabels();
+    }
+
+    /**
+     * Parse the whole text.
+     */
+    public EdgeList parse (String text) {
+        char[] chars = text.toCharArray();
+        parse(chars, 0, chars.length);
+        return edgeList;
+    }
+
+    /**
+     * Parse everything left in reader, a buffer at a time.
+     */
+    public EdgeList parse (Reader reader) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        int length = 0;
+        int read;
+
+        while ((read = reader.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+
+            // Parse complete lines only and keep the rest for the next read...
+            int end = length;
+            while (end > 0 && buffer[end - 1] != '\n')
+                end--;
+
+            if (end > 0) {
+                parse(buffer, 0, end);
+                System.arraycopy(buffer, end, buffer, 0, length - end);
+                length -= end;
+            } else if (length == buffer.length) {
+                // A line longer than the buffer...
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+
+        parse(buffer, 0, length);
+        return edgeList;
+    }
+
+    /**
+     * Parse the lines in text[from, to). The last one doesn't need to end with
+     * a line break, but lines can't be split across calls.
+     */
+    public void parse (char[] text, int from, int to) {
+        int start = from;
+
+        for (int i = from; i < to; i++) {
+            if (text[i] == '\n') {
+                parseLine(text, start, i);
+                start = i + 1;
+            }
+        }
+
+        if (start < to)
+            parseLine(text, start, to);
+
+        edgeList.setLineCount(line);
+    }
+
+    /**
+     * @param line number of the line before the next one to parse.
+     */
+    public void setLine (int line) {
+        this.line = line;
+    }
+
+    /**
+     * @return the edgeList
+     */
+    public EdgeList getEdgeList () {
+        return edgeList;
+    }
+
+    private void parseLine (char[] t, int from, int to) {
+        line++;
+
+        // Trim...
+        while (from < to && t[from] <= ' ')
+            from++;
+        while (to > from && t[to - 1] <= ' ')
+            to--;
+        if (from == to)
+            return;
+
+        int pairEnd = from;
+        while (pairEnd < to && t[pairEnd] > ' ')
+            pairEnd++;
+
+        // Find the operator. "<>" goes first since it contains ">"...
+        int op = indexOf(t, from, pairEnd, '<', '>');
+        int opLength = 2;
+        byte direction = EdgeList.DIRECTION_BOTHWAYS;
+
+        if (op < 0) {
+            opLength = 1;
+            op = indexOf(t, from, pairEnd, '-', '\0');
+            direction = EdgeList.DIRECTION_NONE;
+        }
+        if (op < 0) {
+            op = indexOf(t, from, pairEnd, '>', '\0');
+            direction = EdgeList.DIRECTION_ONEWAY;
+        }
+
+        if (op < 0) { // is a single node...
+            labels.getOrAdd(t, from, pairEnd);
+            return;
+        }
+
+        if (op == from || op + opLength == pairEnd) {
+            error("Missing node in '" + new String(t, from, pairEnd - from) + "'");
+            return;
+        }
+        if (hasOperator(t, from, op) || hasOperator(t, op + opLength, pairEnd)) {
+            error("More than one edge in '" + new String(t, from, pairEnd - from) + "'");
+            return;
+        }
+
+        int source = labels.getOrAdd(t, from, op);
+        int target = labels.getOrAdd(t, op + opLength, pairEnd);
+        int edge = edgeList.addEdge(source, target, direction);
+
+        parseAttributes(t, pairEnd, to, edge);
+    }
+
+    /**
+     * Parse "name=value" tokens in t[from, to) into the attributes of edge.
+     */
+    private void parseAttributes (char[] t, int from, int to, int edge) {
+        int i = from;
+
+        while (i < to) {
+            while (i < to && t[i] <= ' ')
+                i++;
+            if (i == to)
+                return;
+
+            int start = i;
+            while (i < to && t[i] > ' ')
+                i++;
+
+            int equals = indexOf(t, start, i, '=', '\0');
+            if (equals < 0) {
+                error("Expected name=value but found '" + new String(t, start, i - start) + "'");
+                continue;
+            }
+
+            int attribute = -1;
+            if (equals - start == 1)
+                for (int a = 0; a < EdgeList.ATTRIBUTES.length; a++)
+                    if (EdgeList.ATTRIBUTES[a] == t[start])
+                        attribute = a;
+
+            // Unknown attributes are ignored...
+            if (attribute < 0)
+                continue;
+
+            // NaN and infinities fail the range check too...
+            double value = parseNumber(t, equals + 1, i);
+            if (!(value >= 0.0 && value <= 1.0))
+                error("Invalid value '" + new String(t, equals + 1, i - equals - 1) + "' for " + t[start]
+                        + ", expected 0.0 to 1.0");
+            else
+                edgeList.setAttribute(edge, attribute, value);
+        }
+    }
+
+    private void error (String message) {
+        edgeList.addError(new ParseError(line, message));
+    }
+
+    /**
+     * @return true if t[from, to) contains one of the operators "-", "&gt;" or "&lt;&gt;".
+     */
+    private static boolean hasOperator (char[] t, int from, int to) {
+        return indexOf(t, from, to, '-', '\0') >= 0 || indexOf(t, from, to, '>', '\0') >= 0;
+    }
+
+    /**
+     * @return the index of c1 (followed by c2 unless it's '\0') in t[from, to), or -1.
+     */
+    private static int indexOf (char[] t, int from, int to, char c1, char c2) {
+        for (int i = from; i < to; i++)
+            if (t[i] == c1 && (c2 == '\0' || (i + 1 < to && t[i + 1] == c2)))
+                return i;
+        return -1;
+    }
+
+    /**
+     * Parse a decimal number such as "0.25" without creating a String.
+     * Other notations fall back to Double.parseDouble.
+     * @return the number or NaN if it's not valid.
+     */
+    static double parseNumber (char[] t, int from, int to) {
+        int i = from;
+        boolean negative = false;
+
+        if (i < to && (t[i] == '-' || t[i] == '+'))
+            negative = t[i++] == '-';
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean dot = false;
+
+        for (; i < to; i++) {
+            char c = t[i];
+
+            if (c >= '0' && c <= '9' && digits < 15) {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (dot)
+                    scale++;
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                return parseSlow(t, from, to);
+            }
+        }
+
+        if (digits == 0)
+            return Double.NaN;
+
+        // Both values are exact, so the division is correctly rounded...
+        double value = mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    private static double parseSlow (char[] t, int from, int to) {
+        try {
+            return Double.parseDouble(new String(t, from, to - from));
+        } catch (NumberFormatException ex) {
+            return Double.NaN;
+        }
+    }
+}
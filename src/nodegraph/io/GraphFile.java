@@ -0,0 +1,292 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A placed graph in a compact binary file, which is read through memory
+ * mapping with bulk copies only: no text parsing and no layout needed.
+ * Everything is little endian, in this order:
+ * <pre>
+ * header      8 ints: MAGIC, VERSION, nodes, edges, label chars, label bytes, 0, 0
+ * x, y        doubles, per node
+ * attributes  doubles, per edge, EdgeList.ATTRIBUTES.length each
+ * start       ints, nodes + 1: edges of node i go from start[i] to start[i + 1]
+ * target      ints, per edge
+ * labelEnds   ints, nodes + 1: label i is chars [labelEnds[i], labelEnds[i + 1])
+ * direction   bytes, per edge
+ * labels      all labels as UTF-8
+ * </pre>
+ * Edges are stored by source (CSR), so they are read back grouped by
+ * source node, in their original order otherwise. Positions and attributes
+ * are read back exactly as they were written.
+ *
+ * @author elio
+ */
+public class GraphFile {
+    public static final String EXTENSION = "ngraph";
+
+    /**
+     * "NGRF" read as an int.
+     */
+    public static final int MAGIC = 0x4e475246;
+    public static final int VERSION = 2;
+
+    private static final int HEADER_INTS = 8;
+    private static final int HEADER_SIZE = HEADER_INTS * 4;
+
+    private final EdgeList edgeList;
+    private final double[] x;
+    private final double[] y;
+
+    /**
+     * @param x node positions, indexed by node.
+     * @param y node positions, indexed by node.
+     */
+    public GraphFile (EdgeList edgeList, double[] x, double[] y) {
+        if (x.length < edgeList.getNodeCount() || y.length < edgeList.getNodeCount())
+            throw new IllegalArgumentException("Positions for " + Math.min(x.length, y.length)
+                    + " nodes, " + edgeList.getNodeCount() + " needed");
+
+        this.edgeList = edgeList;
+        this.x = x;
+        this.y = y;
+    }
+
+    public EdgeList getEdgeList () {
+        return edgeList;
+    }
+
+    public double[] getX () {
+        return x;
+    }
+
+    public double[] getY () {
+        return y;
+    }
+
+    /**
+     * @return true if the file starts like a graph file.
+     */
+    public static boolean isGraphFile (Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining() && channel.read(magic) > 0) {
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    public static GraphFile read (Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE)
+                throw new IOException(file + " is not a graph file");
+            if (size > Integer.MAX_VALUE)
+                throw new IOException(file + " is too big to be mapped");
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return read(mapped.order(ByteOrder.LITTLE_ENDIAN), file.toString());
+        }
+    }
+
+    private static GraphFile read (ByteBuffer buffer, String name) throws IOException {
+        int[] header = new int[HEADER_INTS];
+        buffer.asIntBuffer().get(header);
+        if (header[0] != MAGIC)
+            throw new IOException(name + " is not a graph file");
+        if (header[1] != VERSION)
+            throw new IOException(name + " has version " + header[1] + ", expected " + VERSION);
+
+        int n = header[2];
+        int m = header[3];
+        int labelChars = header[4];
+        int labelBytes = header[5];
+        if (n < 0 || m < 0 || labelChars < 0 || labelBytes < 0
+                || buffer.limit() != size(n, m, labelBytes))
+            throw new IOException(name + " is truncated or corrupt");
+
+        // UTF-8 never takes fewer bytes than chars...
+        if (labelChars > labelBytes)
+            throw new IOException(name + " has invalid labels");
+
+        // Bulk copies out of the mapping...
+        int position = HEADER_SIZE;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        slice(buffer, position).asDoubleBuffer().get(x);
+        position += n * 8;
+        slice(buffer, position).asDoubleBuffer().get(y);
+        position += n * 8;
+
+        double[] attributes = new double[Math.max(m * EdgeList.ATTRIBUTES.length, 1)];
+        slice(buffer, position).asDoubleBuffer().get(attributes, 0, m * EdgeList.ATTRIBUTES.length);
+        position += m * EdgeList.ATTRIBUTES.length * 8;
+
+        int[] start = new int[n + 1];
+        int[] target = new int[Math.max(m, 1)];
+        int[] labelEnds = new int[n + 1];
+        slice(buffer, position).asIntBuffer().get(start);
+        position += (n + 1) * 4;
+        slice(buffer, position).asIntBuffer().get(target, 0, m);
+        position += m * 4;
+        slice(buffer, position).asIntBuffer().get(labelEnds);
+        position += (n + 1) * 4;
+
+        byte[] direction = new byte[Math.max(m, 1)];
+        slice(buffer, position).get(direction, 0, m);
+        position += m;
+
+        // Sources back from the CSR offsets...
+        if (start[0] != 0 || start[n] != m)
+            throw new IOException(name + " has invalid adjacency");
+        int[] source = new int[Math.max(m, 1)];
+        for (int i = 0; i < n; i++) {
+            if (start[i] > start[i + 1])
+                throw new IOException(name + " has invalid adjacency");
+            for (int e = start[i]; e < start[i + 1]; e++)
+                source[e] = i;
+        }
+        for (int e = 0; e < m; e++)
+            if (target[e] < 0 || target[e] >= n)
+                throw new IOException(name + " has invalid adjacency");
+        for (int e = 0; e < m; e++)
+            if (direction[e] < 0 || direction[e] > EdgeList.DIRECTION_BOTHWAYS)
+                throw new IOException(name + " has invalid directions");
+        if (labelEnds[0] != 0 || labelEnds[n] != labelChars)
+            throw new IOException(name + " has invalid labels");
+
+        LabelIndex labels = readLabels(slice(buffer, position), labelBytes, labelChars, labelEnds, name);
+        EdgeList edgeList = new EdgeList(labels, m, source, target, direction, attributes);
+        return new GraphFile(edgeList, x, y);
+    }
+
+    private static LabelIndex readLabels (ByteBuffer bytes, int labelBytes, int labelChars, int[] labelEnds,
+            String name) throws IOException {
+        int n = labelEnds.length - 1;
+
+        // Fast path for ASCII labels...
+        char[] chars = new char[labelChars];
+        boolean ascii = labelBytes == labelChars;
+        for (int i = 0; i < labelBytes && ascii; i++) {
+            byte b = bytes.get(i);
+            ascii = b >= 0;
+            chars[i] = (char)b;
+        }
+
+        if (!ascii) {
+            CharBuffer decoded;
+            try {
+                decoded = StandardCharsets.UTF_8.newDecoder().decode(bytes);
+            } catch (CharacterCodingException ex) {
+                throw new IOException(name + " has invalid labels", ex);
+            }
+            if (decoded.remaining() != labelChars)
+                throw new IOException(name + " has invalid labels");
+            decoded.get(chars);
+        }
+
+        LabelIndex labels = new LabelIndex(n);
+        for (int i = 0; i < n; i++) {
+            if (labelEnds[i] > labelEnds[i + 1] || labelEnds[i + 1] > labelChars
+                    || labels.getOrAdd(chars, labelEnds[i], labelEnds[i + 1]) != i)
+                throw new IOException(name + " has invalid labels");
+        }
+        return labels;
+    }
+
+    public void write (Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(channel);
+        }
+    }
+
+    public void write (WritableByteChannel channel) throws IOException {
+        int n = edgeList.getNodeCount();
+        int m = edgeList.getEdgeCount();
+        int stride = EdgeList.ATTRIBUTES.length;
+
+        // Edges by source, keeping their order otherwise...
+        int[] start = new int[n + 1];
+        for (int e = 0; e < m; e++)
+            start[edgeList.getSource(e) + 1]++;
+        for (int i = 0; i < n; i++)
+            start[i + 1] += start[i];
+
+        int[] order = new int[m];
+        int[] fill = new int[n];
+        System.arraycopy(start, 0, fill, 0, n);
+        for (int e = 0; e < m; e++)
+            order[fill[edgeList.getSource(e)]++] = e;
+
+        int[] labelEnds = new int[n + 1];
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            text.append(edgeList.getLabels().getLabel(i));
+            labelEnds[i + 1] = text.length();
+        }
+        byte[] labels = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        long size = size(n, m, labels.length);
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("Graph too big to be mapped: " + size + " bytes");
+
+        ByteBuffer buffer = ByteBuffer.allocate((int)size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m)
+                .putInt(text.length()).putInt(labels.length).putInt(0).putInt(0);
+
+        for (int i = 0; i < n; i++)
+            buffer.putDouble(x[i]);
+        for (int i = 0; i < n; i++)
+            buffer.putDouble(y[i]);
+        for (int k = 0; k < m; k++)
+            for (int a = 0; a < stride; a++)
+                buffer.putDouble(edgeList.getAttribute(order[k], a));
+        for (int i = 0; i <= n; i++)
+            buffer.putInt(start[i]);
+        for (int k = 0; k < m; k++)
+            buffer.putInt(edgeList.getTarget(order[k]));
+        for (int i = 0; i <= n; i++)
+            buffer.putInt(labelEnds[i]);
+        for (int k = 0; k < m; k++)
+            buffer.put(edgeList.getDirection(order[k]));
+        buffer.put(labels);
+
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    /**
+     * @return the size of a file with the given amount of nodes, edges and
+     * label bytes.
+     */
+    private static long size (int n, int m, int labelBytes) {
+        return HEADER_SIZE + 16L * n + 4L * (n + 1) * 2 + 4L * m
+                + 8L * m * EdgeList.ATTRIBUTES.length + m + labelBytes;
+    }
+
+    /**
+     * @return a little endian view of buffer from position on.
+     */
+    private static ByteBuffer slice (ByteBuffer buffer, int position) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.io;
+
+import java.util.Arrays;
+
+/**
+ * Case insensitive symbol table mapping node labels to node indices.
+ * Labels are looked up directly from character ranges, so a String is only
+ * created the first time a label is seen. Labels keep the spelling they
+ * were first added with.
+ *
+ * @author elio
+ */
+public class LabelIndex {
+    private String[] labels;
+    private int[] hashes;
+    private int size;
+
+    /**
+     * Open addressing table holding label index + 1, or 0 when empty.
+     */
+    private int[] slots;
+
+    public LabelIndex () {
+        this(16);
+    }
+
+    public LabelIndex (int capacity) {
+        capacity = Math.max(capacity, 4);
+        labels = new String[capacity];
+        hashes = new int[capacity];
+        slots = new int[Integer.highestOneBit(capacity * 2 - 1) * 2];
+    }
+
+    /**
+     * @return the index of the label in text[from, to), which is added if needed.
+     */
+    public int getOrAdd (char[] text, int from, int to) {
+        int hash = hash(text, from, to);
+        int slot = find(hash, text, from, to);
+
+        if (slots[slot] != 0)
+            return slots[slot] - 1;
+
+        return add(new String(text, from, to - from), hash, slot);
+    }
+
+    /**
+     * @return the index of the given label, which is added if needed.
+     */
+    public int getOrAdd (String label) {
+        char[] text = label.toCharArray();
+        return getOrAdd(text, 0, text.length);
+    }
+
+    /**
+     * @return the index of the label in text[from, to), or -1 if there is none.
+     */
+    public int get (char[] text, int from, int to) {
+        int slot = find(hash(text, from, to), text, from, to);
+        return slots[slot] - 1;
+    }
+
+    /**
+     * @return the index of the given label, or -1 if there is none.
+     */
+    public int get (String label) {
+        char[] text = label.toCharArray();
+        return get(text, 0, text.length);
+    }
+
+    /**
+     * @return the label with the given index.
+     */
+    public String getLabel (int index) {
+        return labels[index];
+    }
+
+    /**
+     * @return the amount of labels.
+     */
+    public int size () {
+        return size;
+    }
+
+    private int add (String label, int hash, int slot) {
+        if (size == labels.length) {
+            labels = Arrays.copyOf(labels, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+
+        labels[size] = label;
+        hashes[size] = hash;
+        slots[slot] = ++size;
+
+        // Keep the table at most half full...
+        if (size * 2 > slots.length)
+            rehash();
+
+        return size - 1;
+    }
+
+    private void rehash () {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+
+        for (int i = 0; i < size; i++) {
+            int slot = hashes[i] & mask;
+            while (slots[slot] != 0)
+                slot = (slot + 1) & mask;
+            slots[slot] = i + 1;
+        }
+    }
+
+    /**
+     * @return the slot holding the given label, or the empty slot where it should go.
+     */
+    private int find (int hash, char[] text, int from, int to) {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+
+        while (slots[slot] != 0) {
+            int i = slots[slot] - 1;
+            if (hashes[i] == hash && matches(labels[i], text, from, to))
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Same comparison as String.equalsIgnoreCase.
+     */
+    private static boolean matches (String label, char[] text, int from, int to) {
+        if (label.length() != to - from)
+            return false;
+
+        for (int i = 0; i < label.length(); i++) {
+            char c1 = label.charAt(i);
+            char c2 = text[from + i];
+
+            if (c1 != c2 && Character.toUpperCase(c1) != Character.toUpperCase(c2)
+                    && Character.toLowerCase(c1) != Character.toLowerCase(c2))
+                return false;
+        }
+
+        return true;
+    }
+
+    private static int hash (char[] text, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++)
+            h = 31 * h + Character.toLowerCase(Character.toUpperCase(text[i]));
+
+        // Spread the bits since only the lowest ones pick the slot...
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads UTF-8 edge list files through memory mapping.
+ * The file is split into chunks at line breaks, chunks are parsed in
+ * parallel, each with its own label index, and the results are merged in
+ * file order. Nodes, edges and line numbers come out exactly as if the file
+ * had been parsed sequentially.
+ *
+ * @author elio
+ */
+public class MappedEdgeListReader {
+    private static final long
+            MIN_CHUNK_SIZE = 1 << 20,
+            MAX_CHUNK_SIZE = 1 << 28;
+
+    /**
+     * Bytes decoded and parsed at a time within a chunk.
+     */
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    private final int parallelism;
+
+    /**
+     * @param parallelism amount of threads used for parsing.
+     */
+    public MappedEdgeListReader (int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public EdgeList read (Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<long[]> chunks = split(channel);
+            List<Callable<EdgeList>> tasks = new ArrayList<>(chunks.size());
+
+            for (final long[] chunk : chunks) {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+                tasks.add(new Callable<EdgeList>() {
+                    @Override
+                    public EdgeList call() throws Exception {
+                        return parse(buffer);
+                    }
+                });
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                EdgeList result = null;
+                for (Future<EdgeList> future : pool.invokeAll(tasks)) {
+                    if (result == null)
+                        result = future.get();
+                    else
+                        result.append(future.get());
+                }
+                return result == null ? new EdgeList() : result;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading " + file, ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof IOException)
+                    throw (IOException)ex.getCause();
+                throw new IOException("Could not read " + file, ex.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * @return the [start, end) byte ranges of the chunks, all ending right
+     * after a line break (except for the last one).
+     */
+    private List<long[]> split (FileChannel channel) throws IOException {
+        long size = channel.size();
+        long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / (parallelism * 4)));
+        List<long[]> chunks = new ArrayList<>();
+        ByteBuffer window = ByteBuffer.allocate(1 << 12);
+        long start = 0;
+
+        while (start < size) {
+            long end = Math.min(size, start + chunkSize);
+
+            // Move the end after the next line break...
+            boolean found = end == size;
+            while (!found) {
+                window.clear();
+                int read = channel.read(window, end);
+                if (read <= 0) {
+                    end = size;
+                    break;
+                }
+
+                for (int i = 0; i < read && !found; i++) {
+                    end++;
+                    found = window.get(i) == '\n';
+                }
+            }
+
+            chunks.add(new long[] {start, end});
+            start = end;
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Parse a chunk, a block of complete lines at a time.
+     */
+    private static EdgeList parse (ByteBuffer bytes) throws IOException {
+        EdgeListParser parser = new EdgeListParser();
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        char[] chars = new char[BLOCK_SIZE];
+        int limit = bytes.limit();
+        int start = 0;
+
+        while (start < limit) {
+            int end = Math.min(limit, start + BLOCK_SIZE);
+
+            // Blocks have to end at a line break, unless there is none...
+            if (end < limit) {
+                int lineEnd = end;
+                while (lineEnd > start && bytes.get(lineEnd - 1) != '\n')
+                    lineEnd--;
+                if (lineEnd > start) {
+                    end = lineEnd;
+                } else {
+                    while (end < limit && bytes.get(end - 1) != '\n')
+                        end++;
+                }
+            }
+
+            if (chars.length < end - start)
+                chars = new char[end - start];
+
+            // Fast path for ASCII, which is most edge lists...
+            int length = 0;
+            for (int i = start; i < end; i++) {
+                byte b = bytes.get(i);
+                if (b < 0) {
+                    length = -1;
+                    break;
+                }
+                chars[length++] = (char)b;
+            }
+
+            if (length < 0) {
+                ByteBuffer block = bytes.duplicate();
+                block.limit(end).position(start);
+                CharBuffer decoded = decoder.reset().decode(block);
+                length = decoded.remaining();
+                if (chars.length < length)
+                    chars = new char[length];
+                decoded.get(chars, 0, length);
+            }
+
+            parser.parse(chars, 0, length);
+            start = end;
+        }
+
+        return parser.getEdgeList();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.io;
+
+/**
+ * Problem found on a given line of an edge list.
+ *
+ * @author elio
+ */
+public class ParseError {
+    private final int line;
+    private final String message;
+
+    /**
+     * @param line line number, starting at 1.
+     * @param message what went wrong.
+     */
+    public ParseError (int line, String message) {
+        this.line = line;
+        this.message = message;
+    }
+
+    /**
+     * @return the line
+     */
+    public int getLine () {
+        return line;
+    }
+
+    /**
+     * @return the message
+     */
+    public String getMessage () {
+        return message;
+    }
+
+    @Override
+    public String toString () {
+        return "Line " + line + ": " + message;
+    }
+}
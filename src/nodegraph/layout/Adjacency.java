@@ -0,0 +1,46 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.layout;
+
+import java.util.Arrays;
+
+/**
+ * Neighbors of every node of a LayoutGraph, all in one array: those of
+ * node i go from start[i] (inclusive) to start[i + 1] (exclusive).
+ * Edges count in both directions.
+ *
+ * @author elio
+ */
+class Adjacency {
+    final int[] start;
+    final int[] neighbors;
+
+    Adjacency (LayoutGraph graph) {
+        int n = graph.nodeCount;
+        int m = graph.edgeCount;
+
+        start = new int[n + 1];
+        for (int e = 0; e < m; e++) {
+            start[graph.edgeSource[e] + 1]++;
+            start[graph.edgeTarget[e] + 1]++;
+        }
+        for (int i = 0; i < n; i++)
+            start[i + 1] += start[i];
+
+        neighbors = new int[start[n]];
+        int[] fill = Arrays.copyOf(start, n);
+        for (int e = 0; e < m; e++) {
+            int s = graph.edgeSource[e];
+            int t = graph.edgeTarget[e];
+            neighbors[fill[s]++] = t;
+            neighbors[fill[t]++] = s;
+        }
+    }
+
+    int degree (int i) {
+        return start[i + 1] - start[i];
+    }
+}
@@ -0,0 +1,619 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.layout;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Force directed layout working directly on a LayoutGraph.
+ * Adapted from Gephi's Fruchterman Reingold's algorithm implementation.
+ * See: Graph Drawing by Force directed Placement (Fruchterman et al, 1991)
+ *
+ * @author elio
+ */
+public class FruchtermanReingold implements IterativeLayout {
+    public static final String[] REPULSION_TYPES = {"Auto", "Exact", "Barnes-Hut"};
+    public static final byte
+            REPULSION_AUTO = 0,
+            REPULSION_EXACT = 1,
+            REPULSION_BARNES_HUT = 2;
+
+    /**
+     * Graphs with at least this many nodes use Barnes-Hut when on REPULSION_AUTO.
+     */
+    public static final int BARNES_HUT_THRESHOLD = 1000;
+
+    public static final double
+            DEFAULT_THETA = 0.8,
+            DEFAULT_SPEED = 300,
+            DEFAULT_SPEED_DIVISOR = 2000,
+            DEFAULT_AREA_MULTIPLIER = 0.2,
+            DEFAULT_COOLING = 0.9,
+            DEFAULT_TOLERANCE = 0.01;
+
+    /**
+     * Consecutive iterations with less energy needed before heating up again.
+     */
+    private static final int HEAT_UP_AFTER = 5;
+
+    private final LayoutGraph graph;
+
+    // Bounds nodes are not allowed to leave...
+    private double width;
+    private double height;
+    private double margin;
+
+    private double speed = DEFAULT_SPEED;
+    private double speedDivisor = DEFAULT_SPEED_DIVISOR;
+    private double areaMultiplier = DEFAULT_AREA_MULTIPLIER;
+
+    /**
+     * Barnes-Hut accuracy. The lower, the closer to the exact forces (and slower).
+     */
+    private double theta = DEFAULT_THETA;
+    private byte repulsion = REPULSION_AUTO;
+
+    /**
+     * Computes exact repulsion, vectorized when possible.
+     */
+    private RepulsionKernel kernel = RepulsionKernel.getDefault();
+
+    /**
+     * Adaptive cooling as in: Efficient and high quality force-directed graph
+     * drawing (Hu, 2005). The temperature scales the maximum displacement; it
+     * goes down by the cooling factor whenever energy doesn't decrease, and
+     * back up after HEAT_UP_AFTER iterations of steady decrease.
+     */
+    private double cooling = DEFAULT_COOLING;
+    private double temperature = 1;
+    private int progress;
+
+    /**
+     * The layout has converged when the mean node displacement in an
+     * iteration goes below tolerance * k.
+     */
+    private double tolerance = DEFAULT_TOLERANCE;
+
+    // Results of the last iteration...
+    private int iterations;
+    private double energy = Double.POSITIVE_INFINITY;
+    private double meanDisplacement = Double.POSITIVE_INFINITY;
+    private boolean converged;
+
+    /**
+     * Nodes which are not moved by the layout, if any.
+     */
+    private boolean[] pinned;
+
+    // Node displacements for the current iteration...
+    private double[] dx;
+    private double[] dy;
+
+    private final QuadTree quadTree = new QuadTree();
+    private final int[] stack = QuadTree.newStack();
+
+    /**
+     * Amount of threads used for computing forces. 1 means sequential.
+     */
+    private int parallelism = 1;
+    private ForkJoinPool pool;
+
+    /**
+     * Per worker attractive displacements, parallelism * n values each.
+     * Every worker owns a fixed block of edges, so partial sums don't race and
+     * are reduced in the same order for a given amount of threads.
+     */
+    private double[] blockDx;
+    private double[] blockDy;
+
+    /**
+     * @param graph graph to lay out. Its current positions are the starting point.
+     * @param width width of the area nodes are placed in.
+     * @param height height of the area nodes are placed in.
+     */
+    public FruchtermanReingold (LayoutGraph graph, double width, double height) {
+        this.graph = graph;
+        this.width = width;
+        this.height = height;
+        dx = new double[0];
+        dy = new double[0];
+    }
+
+    /**
+     * Run iterations until the layout converges.
+     * @param maxIterations iteration budget.
+     * @return the amount of iterations run.
+     */
+    public int run (int maxIterations) {
+        int i = 0;
+        while (i < maxIterations && !converged) {
+            step();
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the distance between nodes the forces aim for, k in the
+     * paper. It depends on the area and the amount of nodes.
+     */
+    public double getOptimalDistance () {
+        return Math.sqrt((width * height * areaMultiplier) / Math.max(1, graph.nodeCount));
+    }
+
+    /**
+     * Run a single iteration, moving every node according to its forces.
+     */
+    @Override
+    public void step () {
+        int n = graph.nodeCount;
+        if (n == 0)
+            return;
+
+        if (dx.length < n) {
+            dx = new double[graph.x.length];
+            dy = new double[graph.x.length];
+            blockDx = null;
+            blockDy = null;
+        }
+
+        double area = width * height;
+        double k = getOptimalDistance();
+        double maxDisplace = Math.sqrt(areaMultiplier * area) / 10;
+
+        for (int i = 0; i < n; i++) {
+            dx[i] = 0;
+            dy[i] = 0;
+        }
+
+        boolean barnesHut = useBarnesHut();
+        if (barnesHut)
+            quadTree.build(graph.x, graph.y, n);
+
+        if (pool == null) {
+            // Calculate repulsive forces...
+            repulsion(0, n, k, barnesHut, stack);
+
+            // Calculate attractive forces...
+            attraction(0, graph.edgeCount, k, dx, dy, 0);
+        } else {
+            pool.invoke(new RepulsionTask(0, n, k, barnesHut, grainSize(n)));
+            parallelAttraction(k);
+        }
+
+        double previousEnergy = energy;
+        displace(maxDisplace * temperature);
+        cool(previousEnergy);
+
+        iterations++;
+        converged = meanDisplacement < tolerance * k;
+    }
+
+    /**
+     * Update the temperature according to the energy change of the last iteration.
+     */
+    private void cool (double previousEnergy) {
+        if (energy < previousEnergy) {
+            progress++;
+            if (progress >= HEAT_UP_AFTER) {
+                progress = 0;
+                temperature = Math.min(1, temperature / cooling);
+            }
+        } else {
+            progress = 0;
+            temperature *= cooling;
+        }
+    }
+
+    /**
+     * @return true if repulsive forces should be approximated with Barnes-Hut.
+     */
+    private boolean useBarnesHut () {
+        switch (repulsion) {
+            case REPULSION_EXACT:
+                return false;
+            case REPULSION_BARNES_HUT:
+                return true;
+            default:
+                return graph.nodeCount >= BARNES_HUT_THRESHOLD;
+        }
+    }
+
+    /**
+     * Repulsive forces on nodes from (inclusive) to to (exclusive).
+     * Nodes only write their own displacement, so ranges can run concurrently.
+     */
+    private void repulsion (int from, int to, double k, boolean barnesHut, int[] stack) {
+        if (barnesHut)
+            barnesHutRepulsion(from, to, k, stack);
+        else
+            exactRepulsion(from, to, k);
+    }
+
+    /**
+     * Repulsive forces between every pair of nodes. O(n^2).
+     */
+    private void exactRepulsion (int from, int to, double k) {
+        kernel.repulsion(graph.x, graph.y, graph.nodeCount, from, to, k * k, pinned, dx, dy);
+    }
+
+    /**
+     * Repulsive forces approximated with a Barnes-Hut quadtree. O(n log n).
+     * The tree must have been built for the current positions.
+     */
+    private void barnesHutRepulsion (int from, int to, double k, int[] stack) {
+        double[] x = graph.x;
+        double[] y = graph.y;
+
+        for (int i = from; i < to; i++)
+            if (pinned == null || !pinned[i])
+                quadTree.repulsion(i, x[i], y[i], k * k, theta, dx, dy, stack);
+    }
+
+    /**
+     * Attractive forces of edges from (inclusive) to to (exclusive), added
+     * to fx and fy starting at offset.
+     */
+    private void attraction (int from, int to, double k, double[] fx, double[] fy, int offset) {
+        double[] x = graph.x;
+        double[] y = graph.y;
+
+        for (int e = from; e < to; e++) {
+            int s = graph.edgeSource[e];
+            int t = graph.edgeTarget[e];
+
+            double xdiff = x[s] - x[t];
+            double ydiff = y[s] - y[t];
+            double dist = Math.sqrt(xdiff * xdiff + ydiff * ydiff);
+
+            if (dist > 0) {
+                double force = dist * dist / k;
+                fx[offset + s] -= (xdiff / dist) * force;
+                fy[offset + s] -= (ydiff / dist) * force;
+                fx[offset + t] += (xdiff / dist) * force;
+                fy[offset + t] += (ydiff / dist) * force;
+            }
+        }
+    }
+
+    /**
+     * Attractive forces with every worker accumulating a block of edges on
+     * its own buffer, followed by a reduction into dx and dy.
+     */
+    private void parallelAttraction (final double k) {
+        final int n = graph.nodeCount;
+        final int m = graph.edgeCount;
+        final int stride = dx.length;
+
+        if (blockDx == null || blockDx.length != parallelism * stride) {
+            blockDx = new double[parallelism * stride];
+            blockDy = new double[parallelism * stride];
+        }
+
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                RecursiveAction[] blocks = new RecursiveAction[parallelism];
+
+                for (int b = 0; b < parallelism; b++) {
+                    final int block = b;
+                    blocks[b] = new RecursiveAction() {
+                        @Override
+                        protected void compute() {
+                            int offset = block * stride;
+                            for (int i = 0; i < n; i++) {
+                                blockDx[offset + i] = 0;
+                                blockDy[offset + i] = 0;
+                            }
+                            attraction((int)((long)m * block / parallelism),
+                                    (int)((long)m * (block + 1) / parallelism), k, blockDx, blockDy, offset);
+                        }
+                    };
+                }
+
+                invokeAll(blocks);
+            }
+        });
+
+        pool.invoke(new ReductionTask(0, n, grainSize(n)));
+    }
+
+    private int grainSize (int n) {
+        return Math.max(64, n / (parallelism * 8));
+    }
+
+    /**
+     * Splits repulsion over ranges of nodes.
+     */
+    @SuppressWarnings("serial")
+    private class RepulsionTask extends RecursiveAction {
+        private final int from, to, grain;
+        private final double k;
+        private final boolean barnesHut;
+
+        RepulsionTask (int from, int to, double k, boolean barnesHut, int grain) {
+            this.from = from;
+            this.to = to;
+            this.k = k;
+            this.barnesHut = barnesHut;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                repulsion(from, to, k, barnesHut, QuadTree.newStack());
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RepulsionTask(from, middle, k, barnesHut, grain),
+                        new RepulsionTask(middle, to, k, barnesHut, grain));
+            }
+        }
+    }
+
+    /**
+     * Adds the per worker attractive displacements into dx and dy, always in
+     * block order.
+     */
+    @SuppressWarnings("serial")
+    private class ReductionTask extends RecursiveAction {
+        private final int from, to, grain;
+
+        ReductionTask (int from, int to, int grain) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                int stride = dx.length;
+                for (int i = from; i < to; i++)
+                    for (int b = 0; b < parallelism; b++) {
+                        dx[i] += blockDx[b * stride + i];
+                        dy[i] += blockDy[b * stride + i];
+                    }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ReductionTask(from, middle, grain), new ReductionTask(middle, to, grain));
+            }
+        }
+    }
+
+    /**
+     * Move nodes according to dx and dy, computing energy (sum of squared
+     * forces) and mean displacement on the way.
+     */
+    private void displace (double maxDisplace) {
+        double[] x = graph.x;
+        double[] y = graph.y;
+        double factor = speed / speedDivisor;
+        double totalEnergy = 0;
+        double totalDisplacement = 0;
+        int moving = 0;
+
+        for (int i = 0; i < graph.nodeCount; i++) {
+            if (pinned != null && pinned[i])
+                continue;
+
+            moving++;
+            double ndx = dx[i] * factor;
+            double ndy = dy[i] * factor;
+            double deltaLength = Math.sqrt(ndx * ndx + ndy * ndy);
+
+            totalEnergy += dx[i] * dx[i] + dy[i] * dy[i];
+
+            if (deltaLength > 0) {
+                double min = Math.min(maxDisplace * factor, deltaLength);
+                double nx = x[i] + ndx / deltaLength * min;
+                double ny = y[i] + ndy / deltaLength * min;
+
+                // Don't let it leave the bounds...
+                nx = nx < margin ? margin + 1 : nx;
+                nx = nx > width - margin ? width - margin - 1 : nx;
+                ny = ny < margin ? margin + 1 : ny;
+                ny = ny > height - margin ? height - margin - 1 : ny;
+
+                totalDisplacement += Math.sqrt((nx - x[i]) * (nx - x[i]) + (ny - y[i]) * (ny - y[i]));
+                x[i] = nx;
+                y[i] = ny;
+            }
+        }
+
+        energy = totalEnergy;
+        meanDisplacement = moving == 0 ? 0 : totalDisplacement / moving;
+    }
+
+    /**
+     * @return the graph
+     */
+    @Override
+    public LayoutGraph getGraph () {
+        return graph;
+    }
+
+    /**
+     * Positions are updated by step() already.
+     */
+    @Override
+    public void updateGraph () {
+    }
+
+    /**
+     * @param width the width to set
+     * @param height the height to set
+     */
+    public void setBounds (double width, double height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @param margin minimum distance between nodes and the bounds.
+     */
+    public void setMargin (double margin) {
+        this.margin = margin;
+    }
+
+    /**
+     * @param speed the speed to set
+     */
+    public void setSpeed (double speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * @param speedDivisor the speedDivisor to set
+     */
+    public void setSpeedDivisor (double speedDivisor) {
+        this.speedDivisor = speedDivisor;
+    }
+
+    /**
+     * @param areaMultiplier the areaMultiplier to set
+     */
+    public void setAreaMultiplier (double areaMultiplier) {
+        this.areaMultiplier = areaMultiplier;
+    }
+
+    /**
+     * @param theta the Barnes-Hut theta to set
+     */
+    public void setTheta (double theta) {
+        this.theta = theta;
+    }
+
+    /**
+     * Set the amount of threads used for computing forces.
+     * Results are deterministic for a given amount of threads.
+     * Call shutdown() when done with a parallel layout.
+     * @param parallelism the parallelism to set, 1 for sequential.
+     */
+    public void setParallelism (int parallelism) {
+        parallelism = Math.max(1, parallelism);
+        if (parallelism == this.parallelism)
+            return;
+
+        shutdown();
+        this.parallelism = parallelism;
+        blockDx = null;
+        blockDy = null;
+        if (parallelism > 1)
+            pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * @return the parallelism
+     */
+    public int getParallelism () {
+        return parallelism;
+    }
+
+    /**
+     * Release the worker threads, if any. The layout goes back to sequential.
+     */
+    @Override
+    public void shutdown () {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        parallelism = 1;
+    }
+
+    /**
+     * @param cooling factor (0 to 1) the temperature is multiplied by when cooling down.
+     */
+    public void setCooling (double cooling) {
+        this.cooling = cooling;
+    }
+
+    /**
+     * @param tolerance mean displacement, relative to the optimal distance
+     * between nodes, under which the layout is considered converged.
+     */
+    public void setTolerance (double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * @return the temperature (0 to 1) scaling the maximum displacement.
+     */
+    public double getTemperature () {
+        return temperature;
+    }
+
+    /**
+     * @param temperature the temperature (0 to 1) to set.
+     */
+    public void setTemperature (double temperature) {
+        this.temperature = temperature;
+    }
+
+    /**
+     * @return the amount of iterations run so far.
+     */
+    @Override
+    public int getIterations () {
+        return iterations;
+    }
+
+    /**
+     * @return the energy (sum of squared forces) of the last iteration.
+     */
+    @Override
+    public double getEnergy () {
+        return energy;
+    }
+
+    /**
+     * @return the mean node displacement of the last iteration.
+     */
+    public double getMeanDisplacement () {
+        return meanDisplacement;
+    }
+
+    /**
+     * @return true if the last iteration barely moved nodes.
+     */
+    @Override
+    public boolean isConverged () {
+        return converged;
+    }
+
+    /**
+     * Keep some nodes where they are, e.g. for relaxing a graph only around
+     * what changed. Pinned nodes still push and pull the rest.
+     * @param pinned true for every node index that shouldn't move, or null.
+     */
+    public void setPinned (boolean[] pinned) {
+        this.pinned = pinned;
+    }
+
+    /**
+     * @param repulsion one of the REPULSION_* constants.
+     */
+    public void setRepulsion (byte repulsion) {
+        this.repulsion = repulsion;
+    }
+
+    /**
+     * @return the kernel computing exact repulsion.
+     */
+    public RepulsionKernel getRepulsionKernel () {
+        return kernel;
+    }
+
+    /**
+     * @param kernel the kernel computing exact repulsion, e.g. new
+     * RepulsionKernel.Scalar() for results not depending on the CPU.
+     */
+    public void setRepulsionKernel (RepulsionKernel kernel) {
+        this.kernel = kernel;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.layout;
+
+/**
+ * A layout run one iteration at a time, e.g. on a worker thread publishing
+ * positions after every step.
+ *
+ * @author elio
+ */
+public interface IterativeLayout {
+    /**
+     * Run a single iteration.
+     */
+    void step ();
+
+    /**
+     * @return true when further iterations wouldn't change much.
+     */
+    boolean isConverged ();
+
+    /**
+     * @return the amount of iterations run so far.
+     */
+    int getIterations ();
+
+    /**
+     * @return the energy of the last iteration.
+     */
+    double getEnergy ();
+
+    /**
+     * @return the graph being laid out. Call updateGraph() before reading
+     * its positions.
+     */
+    LayoutGraph getGraph ();
+
+    /**
+     * Bring the positions of getGraph() up to date, for layouts which work
+     * on something else meanwhile (e.g. a coarser graph).
+     */
+    void updateGraph ();
+
+    /**
+     * Release the worker threads, if any.
+     */
+    void shutdown ();
+}
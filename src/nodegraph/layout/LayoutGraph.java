@@ -0,0 +1,118 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.layout;
+
+import java.util.Arrays;
+
+/**
+ * Graph structure used by the layout algorithms.
+ * Nodes are identified by their index (0 to getNodeCount() - 1) and both
+ * positions and edge endpoints are kept in flat arrays, so that layouts
+ * don't depend on JavaFX and don't allocate while iterating.
+ *
+ * @author elio
+ */
+public class LayoutGraph {
+    int nodeCount;
+    int edgeCount;
+
+    // Node positions...
+    double[] x;
+    double[] y;
+
+    // Edge endpoints (node indices)...
+    int[] edgeSource;
+    int[] edgeTarget;
+
+    public LayoutGraph () {
+        this(16, 16);
+    }
+
+    public LayoutGraph (int nodeCapacity, int edgeCapacity) {
+        x = new double[Math.max(nodeCapacity, 1)];
+        y = new double[Math.max(nodeCapacity, 1)];
+        edgeSource = new int[Math.max(edgeCapacity, 1)];
+        edgeTarget = new int[Math.max(edgeCapacity, 1)];
+    }
+
+    /**
+     * Add a node at (0, 0).
+     * @return the index of the new node.
+     */
+    public int addNode () {
+        if (nodeCount == x.length) {
+            x = Arrays.copyOf(x, nodeCount * 2);
+            y = Arrays.copyOf(y, nodeCount * 2);
+        }
+
+        return nodeCount++;
+    }
+
+    /**
+     * Add an edge between two existing nodes.
+     * @return the index of the new edge.
+     */
+    public int addEdge (int source, int target) {
+        if (source < 0 || source >= nodeCount || target < 0 || target >= nodeCount)
+            throw new IndexOutOfBoundsException("Edge " + source + "-" + target + " with " + nodeCount + " nodes");
+
+        if (edgeCount == edgeSource.length) {
+            edgeSource = Arrays.copyOf(edgeSource, edgeCount * 2);
+            edgeTarget = Arrays.copyOf(edgeTarget, edgeCount * 2);
+        }
+
+        edgeSource[edgeCount] = source;
+        edgeTarget[edgeCount] = target;
+        return edgeCount++;
+    }
+
+    /**
+     * Place nodes evenly on a circle, in index order.
+     */
+    public void placeOnCircle (double centerX, double centerY, double radius) {
+        double angle = 2 * Math.PI / nodeCount;
+
+        for (int i = 0; i < nodeCount; i++) {
+            x[i] = centerX + radius * Math.cos((i + 1) * angle);
+            y[i] = centerY + radius * Math.sin((i + 1) * angle);
+        }
+    }
+
+    public void setPosition (int node, double x, double y) {
+        this.x[node] = x;
+        this.y[node] = y;
+    }
+
+    public double getX (int node) {
+        return x[node];
+    }
+
+    public double getY (int node) {
+        return y[node];
+    }
+
+    public int getSource (int edge) {
+        return edgeSource[edge];
+    }
+
+    public int getTarget (int edge) {
+        return edgeTarget[edge];
+    }
+
+    /**
+     * @return the nodeCount
+     */
+    public int getNodeCount () {
+        return nodeCount;
+    }
+
+    /**
+     * @return the edgeCount
+     */
+    public int getEdgeCount () {
+        return edgeCount;
+    }
+}
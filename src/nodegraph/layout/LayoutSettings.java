@@ -0,0 +1,201 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.layout;
+
+/**
+ * How "Place" lays a graph out, shared by the application and the command
+ * line: an initial placement (on a circle or by Pivot MDS), then a
+ * FruchtermanReingold or MultilevelLayout run within an iteration budget.
+ * place() and newLayout() can be called on different threads, as Pivot MDS
+ * takes a while for big graphs; run() does everything at once.
+ *
+ * @author elio
+ */
+public class LayoutSettings {
+    public static final String[] PLACEMENTS = {"Circle", "Pivot MDS"};
+    public static final int
+            PLACEMENT_CIRCLE = 0,
+            PLACEMENT_PIVOT_MDS = 1;
+
+    /**
+     * Default iteration budget. Layouts usually converge earlier.
+     */
+    public static final int DEFAULT_MAX_ITERATIONS = 500;
+
+    /**
+     * Seed for multilevel layouts and Pivot MDS, so placing the same graph
+     * twice gives the same result. Circle placements with a single-level
+     * layout don't use it.
+     */
+    public static final long DEFAULT_SEED = 1;
+
+    /**
+     * Pivot MDS placements are nearly final, so a single-level layout starts
+     * cool and has a short iteration budget.
+     */
+    public static final int MDS_ITERATIONS = 50;
+    public static final double MDS_TEMPERATURE = 0.1;
+
+    private final double width;
+    private final double height;
+
+    private int placement = PLACEMENT_CIRCLE;
+    private boolean multilevel;
+    private double margin;
+    private double theta = FruchtermanReingold.DEFAULT_THETA;
+    private byte repulsion = FruchtermanReingold.REPULSION_AUTO;
+    private int parallelism = 1;
+    private int maxIterations = DEFAULT_MAX_ITERATIONS;
+    private long seed = DEFAULT_SEED;
+
+    /**
+     * @param width width of the area nodes are placed in.
+     * @param height height of the area nodes are placed in.
+     */
+    public LayoutSettings (double width, double height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Give the graph its initial positions, centered in the area.
+     */
+    public void place (LayoutGraph graph) {
+        if (graph.getNodeCount() == 0)
+            return;
+
+        double centerX = width / 2;
+        double centerY = height / 2;
+        if (placement == PLACEMENT_PIVOT_MDS) {
+            double edgeLength = new FruchtermanReingold(graph, width, height).getOptimalDistance();
+            new PivotMDS(graph, seed).place(centerX, centerY, edgeLength);
+        } else {
+            double radius = (graph.getNodeCount() * margin * 1.5) / Math.PI;
+            graph.placeOnCircle(centerX, centerY, radius);
+        }
+    }
+
+    /**
+     * @return the layout to run after place(), see getIterationBudget().
+     */
+    public IterativeLayout newLayout (LayoutGraph graph) {
+        if (multilevel) {
+            MultilevelLayout layout = new MultilevelLayout(graph, width, height, seed);
+            layout.setMargin(margin);
+            layout.setTheta(theta);
+            layout.setRepulsion(repulsion);
+            layout.setParallelism(parallelism);
+            layout.setCoarsestIterations(maxIterations);
+            return layout;
+        }
+
+        FruchtermanReingold layout = newSingleLevelLayout(graph);
+        if (placement == PLACEMENT_PIVOT_MDS)
+            layout.setTemperature(MDS_TEMPERATURE);
+        return layout;
+    }
+
+    /**
+     * @return a FruchtermanReingold layout with these settings, e.g. to
+     * relax part of a graph which is placed already.
+     */
+    public FruchtermanReingold newSingleLevelLayout (LayoutGraph graph) {
+        FruchtermanReingold layout = new FruchtermanReingold(graph, width, height);
+        layout.setMargin(margin);
+        layout.setTheta(theta);
+        layout.setRepulsion(repulsion);
+        layout.setParallelism(parallelism);
+        return layout;
+    }
+
+    /**
+     * @param layout a layout from newLayout().
+     * @return the amount of iterations to run it for at most.
+     */
+    public int getIterationBudget (IterativeLayout layout) {
+        if (layout instanceof MultilevelLayout)
+            return ((MultilevelLayout)layout).getIterationBudget();
+        if (placement == PLACEMENT_PIVOT_MDS)
+            return Math.min(MDS_ITERATIONS, maxIterations);
+        return maxIterations;
+    }
+
+    /**
+     * Place and lay the graph out on the calling thread.
+     */
+    public void run (LayoutGraph graph) {
+        place(graph);
+        if (graph.getNodeCount() == 0)
+            return;
+
+        IterativeLayout layout = newLayout(graph);
+        int total = getIterationBudget(layout);
+        try {
+            for (int i = 0; i < total && !layout.isConverged(); i++)
+                layout.step();
+            layout.updateGraph();
+        } finally {
+            layout.shutdown();
+        }
+    }
+
+    /**
+     * @return true if the seed changes the result with these settings.
+     */
+    public boolean usesSeed () {
+        return multilevel || placement == PLACEMENT_PIVOT_MDS;
+    }
+
+    /**
+     * @param placement one of the PLACEMENT_* constants.
+     */
+    public void setPlacement (int placement) {
+        this.placement = placement;
+    }
+
+    public int getPlacement () {
+        return placement;
+    }
+
+    public void setMultilevel (boolean multilevel) {
+        this.multilevel = multilevel;
+    }
+
+    /**
+     * @param margin node radius: space kept around nodes and between them
+     * on the initial circle.
+     */
+    public void setMargin (double margin) {
+        this.margin = margin;
+    }
+
+    public void setTheta (double theta) {
+        this.theta = theta;
+    }
+
+    /**
+     * @param repulsion one of the FruchtermanReingold.REPULSION_* constants.
+     */
+    public void setRepulsion (byte repulsion) {
+        this.repulsion = repulsion;
+    }
+
+    public void setParallelism (int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param maxIterations iterations of a single-level layout, or of the
+     * coarsest level of a multilevel one.
+     */
+    public void setMaxIterations (int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public void setSeed (long seed) {
+        this.seed = seed;
+    }
+}
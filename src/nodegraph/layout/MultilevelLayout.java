@@ -0,0 +1,430 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.layout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Multilevel force directed layout for big graphs.
+ * See: A Multilevel Algorithm for Force-Directed Graph Drawing (Walshaw, 2003)
+ *
+ * The graph is coarsened by matching every node with its lightest unmatched
+ * neighbor and merging them, until it's small enough or stops shrinking.
+ * The coarsest graph is laid out with FruchtermanReingold; then every finer
+ * level starts with its nodes around the position of the node they were
+ * merged into, and is refined with a short, cooler FruchtermanReingold run.
+ * Positions the graph has on the first step are kept as centers of mass,
+ * so the coarsest level starts from (a summary of) whatever placement they
+ * had. Until the given graph itself is refined, its nodes only follow the
+ * ones they were merged into on updateGraph().
+ *
+ * @author elio
+ */
+public class MultilevelLayout implements IterativeLayout {
+    /**
+     * Coarsening stops at this many nodes...
+     */
+    public static final int DEFAULT_COARSEST_SIZE = 50;
+
+    /**
+     * ... or when a level keeps more than this fraction of the nodes of the
+     * level below (e.g. lots of isolated nodes).
+     */
+    public static final double STALL_RATIO = 0.8;
+
+    public static final int
+            DEFAULT_COARSEST_ITERATIONS = 300,
+            DEFAULT_LEVEL_ITERATIONS = 50;
+
+    /**
+     * Temperature refined levels start with. Their nodes are almost in place.
+     */
+    public static final double REFINE_TEMPERATURE = 0.3;
+
+    /**
+     * Merged nodes are spread around their coarse position by this fraction
+     * of the optimal distance between nodes of the finer level.
+     */
+    private static final double SPREAD = 0.25;
+
+    private final LayoutGraph graph;
+
+    /**
+     * Graphs from the finest (0, the given graph) to the coarsest.
+     */
+    private final ArrayList<LayoutGraph> levels = new ArrayList<>();
+
+    /**
+     * For every level but the coarsest, the node of the next level every
+     * node was merged into.
+     */
+    private final ArrayList<int[]> parents = new ArrayList<>();
+
+    private final double width;
+    private final double height;
+    private final Random random;
+
+    // FruchtermanReingold settings for every level...
+    private double margin;
+    private double theta = FruchtermanReingold.DEFAULT_THETA;
+    private byte repulsion = FruchtermanReingold.REPULSION_AUTO;
+    private int parallelism = 1;
+
+    private int coarsestIterations = DEFAULT_COARSEST_ITERATIONS;
+    private int levelIterations = DEFAULT_LEVEL_ITERATIONS;
+
+    // Level being laid out, and how...
+    private int level = -1;
+    private FruchtermanReingold layout;
+    private int levelStep;
+    private int iterations;
+
+    // The given graph doesn't follow the current level yet...
+    private boolean graphStale;
+
+    /**
+     * @param graph graph to lay out. Its current positions are the starting point.
+     * @param width width of the area nodes are placed in.
+     * @param height height of the area nodes are placed in.
+     * @param seed seed for the order nodes are matched in and how merged
+     * nodes are spread, so results are repeatable.
+     */
+    public MultilevelLayout (LayoutGraph graph, double width, double height, long seed) {
+        this(graph, width, height, seed, DEFAULT_COARSEST_SIZE);
+    }
+
+    /**
+     * @param coarsestSize amount of nodes under which coarsening stops.
+     */
+    public MultilevelLayout (LayoutGraph graph, double width, double height, long seed, int coarsestSize) {
+        this.graph = graph;
+        this.width = width;
+        this.height = height;
+        this.random = new Random(seed);
+
+        levels.add(graph);
+        LayoutGraph current = graph;
+        while (current.nodeCount > coarsestSize) {
+            int[] parent = new int[current.nodeCount];
+            LayoutGraph coarse = coarsen(current, parent);
+            if (coarse.nodeCount > current.nodeCount * STALL_RATIO)
+                break;
+
+            parents.add(parent);
+            levels.add(coarse);
+            current = coarse;
+        }
+    }
+
+    /**
+     * Merge nodes of graph pairwise, writing the coarse node every node goes
+     * into to parent.
+     * @return the coarse graph, without positions yet.
+     */
+    private LayoutGraph coarsen (LayoutGraph graph, int[] parent) {
+        int n = graph.nodeCount;
+        int m = graph.edgeCount;
+
+        Adjacency adjacency = new Adjacency(graph);
+        int[] start = adjacency.start;
+        int[] neighbors = adjacency.neighbors;
+
+        // Visit nodes in random order, or the same regions always merge first...
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++)
+            order[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+
+        // Match nodes with their lightest unmatched neighbor (degree as
+        // weight), keeping coarse nodes balanced...
+        Arrays.fill(parent, -1);
+        int coarseCount = 0;
+        for (int k = 0; k < n; k++) {
+            int i = order[k];
+            if (parent[i] >= 0)
+                continue;
+
+            int match = -1;
+            for (int a = start[i]; a < start[i + 1]; a++) {
+                int j = neighbors[a];
+                if (j != i && parent[j] < 0 && (match < 0 || adjacency.degree(j) < adjacency.degree(match)))
+                    match = j;
+            }
+
+            if (match >= 0) {
+                parent[i] = coarseCount;
+                parent[match] = coarseCount;
+                coarseCount++;
+            }
+        }
+
+        // Nodes whose neighbors were all taken (e.g. leaves of a star) join
+        // one of them, isolated ones stay on their own...
+        for (int i = 0; i < n; i++) {
+            if (parent[i] >= 0)
+                continue;
+
+            for (int a = start[i]; a < start[i + 1]; a++)
+                if (parent[neighbors[a]] >= 0) {
+                    parent[i] = parent[neighbors[a]];
+                    break;
+                }
+
+            if (parent[i] < 0)
+                parent[i] = coarseCount++;
+        }
+
+        LayoutGraph coarse = new LayoutGraph(coarseCount, m);
+        for (int c = 0; c < coarseCount; c++)
+            coarse.addNode();
+
+        // Edges between different coarse nodes, once each...
+        long[] keys = new long[m];
+        int keyCount = 0;
+        for (int e = 0; e < m; e++) {
+            int s = parent[graph.edgeSource[e]];
+            int t = parent[graph.edgeTarget[e]];
+            if (s != t)
+                keys[keyCount++] = (long)Math.min(s, t) * coarseCount + Math.max(s, t);
+        }
+        Arrays.sort(keys, 0, keyCount);
+        for (int k = 0; k < keyCount; k++)
+            if (k == 0 || keys[k] != keys[k - 1])
+                coarse.addEdge((int)(keys[k] / coarseCount), (int)(keys[k] % coarseCount));
+
+        return coarse;
+    }
+
+    /**
+     * Run an iteration on the current level, moving on to the next finer
+     * one when it's done.
+     */
+    @Override
+    public void step () {
+        if (layout == null) {
+            // Start from the positions the graph has now...
+            for (int l = 0; l < levels.size() - 1; l++)
+                restrict(l);
+
+            level = levels.size() - 1;
+            layout = newLayout(levels.get(level));
+        } else if (isLevelDone() && level > 0) {
+            layout.shutdown();
+            refine(level - 1);
+            level--;
+            layout = newLayout(levels.get(level));
+            layout.setTemperature(REFINE_TEMPERATURE);
+            levelStep = 0;
+        }
+
+        if (isLevelDone())
+            return;
+
+        layout.step();
+        levelStep++;
+        iterations++;
+        graphStale = level > 0;
+
+        if (level == 0 && isLevelDone())
+            layout.shutdown();
+    }
+
+    private boolean isLevelDone () {
+        return layout.isConverged() || levelStep >= (level == levels.size() - 1 ? coarsestIterations : levelIterations);
+    }
+
+    /**
+     * Move the nodes of the level after the given one to the center of mass
+     * of the nodes merged into them.
+     */
+    private void restrict (int fine) {
+        LayoutGraph graph = levels.get(fine);
+        LayoutGraph coarse = levels.get(fine + 1);
+        int[] parent = parents.get(fine);
+        int[] members = new int[coarse.nodeCount];
+
+        Arrays.fill(coarse.x, 0, coarse.nodeCount, 0);
+        Arrays.fill(coarse.y, 0, coarse.nodeCount, 0);
+        for (int i = 0; i < graph.nodeCount; i++) {
+            coarse.x[parent[i]] += graph.x[i];
+            coarse.y[parent[i]] += graph.y[i];
+            members[parent[i]]++;
+        }
+        for (int c = 0; c < coarse.nodeCount; c++) {
+            coarse.x[c] /= members[c];
+            coarse.y[c] /= members[c];
+        }
+    }
+
+    /**
+     * Place the nodes of the given level around the node of the next level
+     * they were merged into.
+     */
+    private void refine (int fine) {
+        LayoutGraph graph = levels.get(fine);
+        double k = Math.sqrt(width * height * FruchtermanReingold.DEFAULT_AREA_MULTIPLIER / graph.nodeCount);
+
+        project(fine, k * SPREAD);
+        for (int i = 0; i < graph.nodeCount; i++) {
+            graph.x[i] = Math.max(margin + 1, Math.min(width - margin - 1, graph.x[i]));
+            graph.y[i] = Math.max(margin + 1, Math.min(height - margin - 1, graph.y[i]));
+        }
+    }
+
+    /**
+     * Move the nodes of the given level to the node of the next level they
+     * were merged into, at a random distance up to spread.
+     */
+    private void project (int fine, double spread) {
+        LayoutGraph graph = levels.get(fine);
+        LayoutGraph coarse = levels.get(fine + 1);
+        int[] parent = parents.get(fine);
+
+        for (int i = 0; i < graph.nodeCount; i++) {
+            double x = coarse.x[parent[i]];
+            double y = coarse.y[parent[i]];
+            if (spread > 0) {
+                double angle = random.nextDouble() * 2 * Math.PI;
+                double distance = random.nextDouble() * spread;
+                x += distance * Math.cos(angle);
+                y += distance * Math.sin(angle);
+            }
+            graph.x[i] = x;
+            graph.y[i] = y;
+        }
+    }
+
+    private FruchtermanReingold newLayout (LayoutGraph graph) {
+        FruchtermanReingold layout = new FruchtermanReingold(graph, width, height);
+        layout.setMargin(margin);
+        layout.setTheta(theta);
+        layout.setRepulsion(repulsion);
+        layout.setParallelism(parallelism);
+        return layout;
+    }
+
+    /**
+     * Move the nodes of the given graph to the ones of the current level
+     * they were merged into, through every level in between.
+     */
+    @Override
+    public void updateGraph () {
+        if (!graphStale)
+            return;
+
+        for (int l = level; l > 0; l--)
+            project(l - 1, 0);
+        graphStale = false;
+    }
+
+    /**
+     * @return true once the given graph itself has been refined.
+     */
+    @Override
+    public boolean isConverged () {
+        return layout != null && level == 0 && isLevelDone();
+    }
+
+    /**
+     * @return the amount of iterations run so far, over every level.
+     */
+    @Override
+    public int getIterations () {
+        return iterations;
+    }
+
+    /**
+     * @return the iterations needed for every level, at most.
+     */
+    public int getIterationBudget () {
+        return coarsestIterations + levelIterations * (levels.size() - 1);
+    }
+
+    /**
+     * @return the energy of the last iteration, on its level.
+     */
+    @Override
+    public double getEnergy () {
+        return layout == null ? Double.POSITIVE_INFINITY : layout.getEnergy();
+    }
+
+    /**
+     * @return the given graph.
+     */
+    @Override
+    public LayoutGraph getGraph () {
+        return graph;
+    }
+
+    /**
+     * @return the amount of levels, the given graph included.
+     */
+    public int getLevelCount () {
+        return levels.size();
+    }
+
+    /**
+     * @return the level being laid out, 0 being the given graph.
+     */
+    public int getLevel () {
+        return level;
+    }
+
+    @Override
+    public void shutdown () {
+        if (layout != null)
+            layout.shutdown();
+    }
+
+    /**
+     * @param margin minimum distance between nodes and the bounds.
+     */
+    public void setMargin (double margin) {
+        this.margin = margin;
+    }
+
+    /**
+     * @param theta the Barnes-Hut theta to set
+     */
+    public void setTheta (double theta) {
+        this.theta = theta;
+    }
+
+    /**
+     * @param repulsion one of the FruchtermanReingold.REPULSION_* constants.
+     */
+    public void setRepulsion (byte repulsion) {
+        this.repulsion = repulsion;
+    }
+
+    /**
+     * @param parallelism amount of threads used for computing forces.
+     */
+    public void setParallelism (int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param coarsestIterations iteration budget of the coarsest level.
+     */
+    public void setCoarsestIterations (int coarsestIterations) {
+        this.coarsestIterations = coarsestIterations;
+    }
+
+    /**
+     * @param levelIterations iteration budget of every refined level.
+     */
+    public void setLevelIterations (int levelIterations) {
+        this.levelIterations = levelIterations;
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.layout;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Initial placement approximating graph distances, for force directed
+ * layouts to only refine.
+ * See: Eigensolver Methods for Progressive Multidimensional Scaling of
+ * Large Data (Brandes et al, 2006)
+ *
+ * Distances from a few pivot nodes (picked far from each other) to every
+ * node are found with a BFS each. The double centered matrix of squared
+ * distances, n x pivots, is then projected on the two main eigenvectors of
+ * its pivots x pivots product with itself. That's O(pivots * (n + m)) plus
+ * O(n * pivots^2), and n * pivots floats of memory.
+ *
+ * @author elio
+ */
+public class PivotMDS {
+    public static final int DEFAULT_PIVOTS = 50;
+
+    private static final int MAX_POWER_ITERATIONS = 300;
+    private static final double POWER_TOLERANCE = 1e-10;
+
+    private final LayoutGraph graph;
+    private final Random random;
+    private int pivots = DEFAULT_PIVOTS;
+
+    /**
+     * @param seed seed for the first pivot and the eigenvector iterations,
+     * so results are repeatable.
+     */
+    public PivotMDS (LayoutGraph graph, long seed) {
+        this.graph = graph;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @param pivots amount of BFS sources, the more the closer to actual
+     * graph distances.
+     */
+    public void setPivots (int pivots) {
+        this.pivots = Math.max(2, pivots);
+    }
+
+    /**
+     * Place every node of the graph, centered on (centerX, centerY), so
+     * that edges are edgeLength long on average.
+     */
+    public void place (double centerX, double centerY, double edgeLength) {
+        int n = graph.nodeCount;
+        if (n < 3) {
+            graph.placeOnCircle(centerX, centerY, edgeLength / 2);
+            return;
+        }
+
+        int k = Math.min(pivots, n);
+        float[] c = centeredDistances(k);
+
+        // Main eigenvectors of C^T C, with C n x k...
+        double[] b = new double[k * k];
+        for (int i = 0; i < n; i++)
+            for (int p = 0; p < k; p++) {
+                double cp = c[i * k + p];
+                for (int q = p; q < k; q++)
+                    b[p * k + q] += cp * c[i * k + q];
+            }
+        for (int p = 0; p < k; p++)
+            for (int q = 0; q < p; q++)
+                b[p * k + q] = b[q * k + p];
+
+        double[] first = new double[k];
+        double[] second = new double[k];
+        double lambda = eigenvector(b, k, first);
+        deflate(b, k, first, lambda);
+        eigenvector(b, k, second);
+
+        double[] x = graph.x;
+        double[] y = graph.y;
+        for (int i = 0; i < n; i++) {
+            double px = 0;
+            double py = 0;
+            for (int p = 0; p < k; p++) {
+                px += c[i * k + p] * first[p];
+                py += c[i * k + p] * second[p];
+            }
+            x[i] = px;
+            y[i] = py;
+        }
+
+        fit(centerX, centerY, edgeLength);
+    }
+
+    /**
+     * @return the n x k matrix of squared BFS distances from k pivots, double
+     * centered: -1/2 (d^2 - row mean - column mean + mean).
+     */
+    private float[] centeredDistances (int k) {
+        int n = graph.nodeCount;
+        Adjacency adjacency = new Adjacency(graph);
+        float[] c = new float[n * k];
+
+        int[] distance = new int[n];
+        int[] closest = new int[n];
+        int[] queue = new int[n];
+        Arrays.fill(closest, Integer.MAX_VALUE);
+
+        // Max-min pivots: every one is as far as possible from the previous ones...
+        int pivot = random.nextInt(n);
+        for (int p = 0; p < k; p++) {
+            int farthest = bfs(adjacency, pivot, distance, queue);
+
+            // Disconnected nodes go a step beyond the farthest one...
+            for (int i = 0; i < n; i++) {
+                int d = distance[i] < 0 ? farthest + 1 : distance[i];
+                c[i * k + p] = (float)d * d;
+                closest[i] = Math.min(closest[i], d);
+            }
+
+            int next = 0;
+            for (int i = 1; i < n; i++)
+                if (closest[i] > closest[next])
+                    next = i;
+            pivot = next;
+        }
+
+        double[] rowMean = new double[n];
+        double[] columnMean = new double[k];
+        double mean = 0;
+        for (int i = 0; i < n; i++)
+            for (int p = 0; p < k; p++) {
+                double d2 = c[i * k + p];
+                rowMean[i] += d2 / k;
+                columnMean[p] += d2 / n;
+                mean += d2 / ((double)n * k);
+            }
+
+        for (int i = 0; i < n; i++)
+            for (int p = 0; p < k; p++)
+                c[i * k + p] = (float)(-0.5 * (c[i * k + p] - rowMean[i] - columnMean[p] + mean));
+
+        return c;
+    }
+
+    /**
+     * Hops from source to every node, -1 if unreachable.
+     * @return the largest distance found.
+     */
+    private static int bfs (Adjacency adjacency, int source, int[] distance, int[] queue) {
+        Arrays.fill(distance, -1);
+        distance[source] = 0;
+        queue[0] = source;
+        int head = 0;
+        int tail = 1;
+        int farthest = 0;
+
+        while (head < tail) {
+            int i = queue[head++];
+            for (int a = adjacency.start[i]; a < adjacency.start[i + 1]; a++) {
+                int j = adjacency.neighbors[a];
+                if (distance[j] < 0) {
+                    distance[j] = distance[i] + 1;
+                    farthest = distance[j];
+                    queue[tail++] = j;
+                }
+            }
+        }
+
+        return farthest;
+    }
+
+    /**
+     * Power iteration on the symmetric k x k matrix b.
+     * @return the eigenvalue of the eigenvector written into v.
+     */
+    private double eigenvector (double[] b, int k, double[] v) {
+        double[] next = new double[k];
+        for (int p = 0; p < k; p++)
+            v[p] = random.nextDouble() - 0.5;
+        normalize(v);
+
+        double lambda = 0;
+        for (int iteration = 0; iteration < MAX_POWER_ITERATIONS; iteration++) {
+            for (int p = 0; p < k; p++) {
+                double sum = 0;
+                for (int q = 0; q < k; q++)
+                    sum += b[p * k + q] * v[q];
+                next[p] = sum;
+            }
+
+            lambda = normalize(next);
+            if (lambda == 0)
+                break;
+
+            double dot = 0;
+            for (int p = 0; p < k; p++)
+                dot += next[p] * v[p];
+            System.arraycopy(next, 0, v, 0, k);
+
+            if (1 - Math.abs(dot) < POWER_TOLERANCE)
+                break;
+        }
+
+        return lambda;
+    }
+
+    private static void deflate (double[] b, int k, double[] v, double lambda) {
+        for (int p = 0; p < k; p++)
+            for (int q = 0; q < k; q++)
+                b[p * k + q] -= lambda * v[p] * v[q];
+    }
+
+    /**
+     * @return the length v had.
+     */
+    private static double normalize (double[] v) {
+        double length = 0;
+        for (double value : v)
+            length += value * value;
+        length = Math.sqrt(length);
+
+        if (length > 0)
+            for (int p = 0; p < v.length; p++)
+                v[p] /= length;
+        return length;
+    }
+
+    /**
+     * Scale positions so edges are edgeLength long on average, and center them.
+     */
+    private void fit (double centerX, double centerY, double edgeLength) {
+        int n = graph.nodeCount;
+        double[] x = graph.x;
+        double[] y = graph.y;
+
+        double total = 0;
+        for (int e = 0; e < graph.edgeCount; e++) {
+            double xdiff = x[graph.edgeSource[e]] - x[graph.edgeTarget[e]];
+            double ydiff = y[graph.edgeSource[e]] - y[graph.edgeTarget[e]];
+            total += Math.sqrt(xdiff * xdiff + ydiff * ydiff);
+        }
+        double scale = total > 0 ? edgeLength / (total / graph.edgeCount) : 1;
+
+        double meanX = 0;
+        double meanY = 0;
+        for (int i = 0; i < n; i++) {
+            meanX += x[i] / n;
+            meanY += y[i] / n;
+        }
+
+        for (int i = 0; i < n; i++) {
+            x[i] = centerX + (x[i] - meanX) * scale;
+            y[i] = centerY + (y[i] - meanY) * scale;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.layout;
+
+/**
+ * Hands node positions over from a thread running a layout to another one
+ * displaying it (e.g. once per JavaFX pulse). Only the latest published
+ * positions are kept, older ones are simply overwritten.
+ *
+ * @author elio
+ */
+public class PositionSnapshot {
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private int count;
+
+    /**
+     * True when positions were published but not yet copied.
+     */
+    private boolean fresh;
+
+    /**
+     * Store the current positions of graph.
+     */
+    public synchronized void publish (LayoutGraph graph) {
+        count = graph.nodeCount;
+        if (x.length < count) {
+            x = new double[count];
+            y = new double[count];
+        }
+
+        System.arraycopy(graph.x, 0, x, 0, count);
+        System.arraycopy(graph.y, 0, y, 0, count);
+        fresh = true;
+    }
+
+    /**
+     * @return true if the latest published positions were not copied yet,
+     * so publishing again can wait.
+     */
+    public synchronized boolean isPending () {
+        return fresh;
+    }
+
+    /**
+     * Copy the latest published positions, if they were not copied already.
+     * @return true if toX and toY were updated.
+     */
+    public synchronized boolean copyTo (double[] toX, double[] toY) {
+        if (!fresh)
+            return false;
+
+        System.arraycopy(x, 0, toX, 0, count);
+        System.arraycopy(y, 0, toY, 0, count);
+        fresh = false;
+        return true;
+    }
+}
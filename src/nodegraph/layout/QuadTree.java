@@ -0,0 +1,243 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.layout;
+
+import java.util.Arrays;
+
+/**
+ * Barnes-Hut quadtree used for approximating repulsive forces in O(n log n).
+ * See: A hierarchical O(N log N) force-calculation algorithm (Barnes et al, 1986)
+ *
+ * The tree is stored in flat arrays so it can be rebuilt on every iteration
+ * without allocating new cells. Once built, it's read only, so several threads
+ * may query it at the same time as long as each one uses its own stack.
+ *
+ * @author elio
+ */
+public class QuadTree {
+    /**
+     * Coincident nodes would be split forever, so cells at this depth
+     * simply accumulate every node that falls into them.
+     */
+    private static final int MAX_DEPTH = 48;
+
+    private static final int
+            EMPTY = -1,
+            INTERNAL = -2;
+
+    // Cell geometry: center and half the side of the square...
+    private double[] centerX;
+    private double[] centerY;
+    private double[] halfSize;
+
+    // Cell mass (amount of nodes) and center of mass...
+    private double[] mass;
+    private double[] massX;
+    private double[] massY;
+
+    /**
+     * Four entries per cell with the index of each child cell, or EMPTY.
+     */
+    private int[] children;
+
+    /**
+     * Node index held by a leaf cell, EMPTY or INTERNAL otherwise.
+     */
+    private int[] body;
+
+    private int cellCount;
+
+    /**
+     * Stack used by repulsion() when no stack is given.
+     */
+    private final int[] stack;
+
+    public QuadTree () {
+        allocate(64);
+        stack = newStack();
+    }
+
+    /**
+     * @return a stack big enough for traversing any tree.
+     */
+    public static int[] newStack () {
+        return new int[4 * (MAX_DEPTH + 1)];
+    }
+
+    /**
+     * Build the tree from the first n positions in x and y.
+     */
+    public void build (double[] x, double[] y, int n) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+
+        cellCount = 0;
+        if (n == 0)
+            return;
+
+        // The root has to be a square containing every node...
+        double half = Math.max(maxX - minX, maxY - minY) / 2 + 1;
+        newCell((minX + maxX) / 2, (minY + maxY) / 2, half);
+
+        for (int i = 0; i < n; i++)
+            insert(i, x[i], y[i]);
+
+        // Turn the accumulated sums into actual centers of mass...
+        for (int c = 0; c < cellCount; c++) {
+            massX[c] /= mass[c];
+            massY[c] /= mass[c];
+        }
+    }
+
+    private void insert (int i, double x, double y) {
+        int cell = 0;
+        int depth = 0;
+
+        while (true) {
+            if (body[cell] == EMPTY) {
+                body[cell] = i;
+                addMass(cell, x, y);
+                return;
+            }
+
+            if (body[cell] >= 0) {
+                if (depth >= MAX_DEPTH) {
+                    addMass(cell, x, y);
+                    return;
+                }
+
+                // Push the node already here one level down...
+                int old = body[cell];
+                double oldX = massX[cell];
+                double oldY = massY[cell];
+                body[cell] = INTERNAL;
+                int oldChild = childFor(cell, oldX, oldY);
+                body[oldChild] = old;
+                addMass(oldChild, oldX, oldY);
+            }
+
+            addMass(cell, x, y);
+            cell = childFor(cell, x, y);
+            depth++;
+        }
+    }
+
+    /**
+     * @return the child of cell containing (x, y), which is created if needed.
+     */
+    private int childFor (int cell, double x, double y) {
+        int quadrant = (x < centerX[cell] ? 0 : 1) + (y < centerY[cell] ? 0 : 2);
+        int child = children[cell * 4 + quadrant];
+
+        if (child == EMPTY) {
+            double half = halfSize[cell] / 2;
+            double cx = x < centerX[cell] ? centerX[cell] - half : centerX[cell] + half;
+            double cy = y < centerY[cell] ? centerY[cell] - half : centerY[cell] + half;
+            child = newCell(cx, cy, half);
+            children[cell * 4 + quadrant] = child;
+        }
+
+        return child;
+    }
+
+    private void addMass (int cell, double x, double y) {
+        mass[cell]++;
+        massX[cell] += x;
+        massY[cell] += y;
+    }
+
+    private int newCell (double cx, double cy, double half) {
+        if (cellCount == body.length)
+            allocate(body.length * 2);
+
+        int c = cellCount++;
+        centerX[c] = cx;
+        centerY[c] = cy;
+        halfSize[c] = half;
+        mass[c] = 0;
+        massX[c] = 0;
+        massY[c] = 0;
+        body[c] = EMPTY;
+        Arrays.fill(children, c * 4, c * 4 + 4, EMPTY);
+        return c;
+    }
+
+    private void allocate (int capacity) {
+        int old = body == null ? 0 : body.length;
+
+        centerX = old == 0 ? new double[capacity] : Arrays.copyOf(centerX, capacity);
+        centerY = old == 0 ? new double[capacity] : Arrays.copyOf(centerY, capacity);
+        halfSize = old == 0 ? new double[capacity] : Arrays.copyOf(halfSize, capacity);
+        mass = old == 0 ? new double[capacity] : Arrays.copyOf(mass, capacity);
+        massX = old == 0 ? new double[capacity] : Arrays.copyOf(massX, capacity);
+        massY = old == 0 ? new double[capacity] : Arrays.copyOf(massY, capacity);
+        children = old == 0 ? new int[capacity * 4] : Arrays.copyOf(children, capacity * 4);
+        body = old == 0 ? new int[capacity] : Arrays.copyOf(body, capacity);
+    }
+
+    /**
+     * Add to dx[i], dy[i] the repulsive force the rest of the nodes exert on node i.
+     *
+     * @param i node index, as given to build().
+     * @param x node x position.
+     * @param y node y position.
+     * @param k2 squared optimal distance between nodes.
+     * @param theta accuracy parameter. Cells whose size/distance ratio is below
+     * it are treated as a single body; 0 means exact.
+     */
+    public void repulsion (int i, double x, double y, double k2, double theta, double[] dx, double[] dy) {
+        repulsion(i, x, y, k2, theta, dx, dy, stack);
+    }
+
+    /**
+     * Same as repulsion() but using the given stack (see newStack()), so that
+     * it can be called concurrently.
+     */
+    public void repulsion (int i, double x, double y, double k2, double theta,
+            double[] dx, double[] dy, int[] stack) {
+        if (cellCount == 0)
+            return;
+
+        double fx = 0;
+        double fy = 0;
+        int top = 0;
+        stack[top++] = 0;
+
+        while (top > 0) {
+            int c = stack[--top];
+
+            double xdiff = x - massX[c];
+            double ydiff = y - massY[c];
+            double dist = Math.sqrt(xdiff * xdiff + ydiff * ydiff);
+
+            if (body[c] >= 0 || (dist > 0 && 2 * halfSize[c] / dist < theta)) {
+                // Either a leaf or far enough to be taken as one body...
+                if (body[c] == i && mass[c] == 1)
+                    continue;
+
+                if (dist > 0) {
+                    double force = mass[c] * k2 / dist;
+                    fx += xdiff / dist * force;
+                    fy += ydiff / dist * force;
+                }
+            } else {
+                for (int q = c * 4; q < c * 4 + 4; q++)
+                    if (children[q] != EMPTY)
+                        stack[top++] = children[q];
+            }
+        }
+
+        dx[i] += fx;
+        dy[i] += fy;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.layout;
+
+/**
+ * Exact (all pairs) repulsive forces, as used by FruchtermanReingold.
+ * Every node i in a range is pushed away from every other node j by
+ * k^2 / dist along (x[i] - x[j], y[i] - y[j]) / dist, which is the same as
+ * adding (xdiff, ydiff) * k^2 / dist^2, so no square root is needed.
+ *
+ * The default kernel uses the Vector API (jdk.incubator.vector) when it's
+ * available, see src-vector and the -post-compile target in build.xml.
+ * Otherwise, or when the nodegraph.vector system property is false, it's the
+ * scalar one.
+ *
+ * @author elio
+ */
+public abstract class RepulsionKernel {
+    private static final String VECTOR_KERNEL = "nodegraph.layout.VectorRepulsion";
+
+    private static RepulsionKernel defaultKernel;
+
+    /**
+     * Add the repulsive displacement of nodes from (inclusive) to to
+     * (exclusive) to dx and dy. Nodes only write their own displacement, so
+     * ranges can run concurrently.
+     * @param n amount of nodes pushing, the first n in x and y.
+     * @param pinned nodes to skip, or null.
+     */
+    public abstract void repulsion (double[] x, double[] y, int n, int from, int to, double k2,
+            boolean[] pinned, double[] dx, double[] dy);
+
+    /**
+     * @return a name for the kernel, e.g. for benchmarks and logs.
+     */
+    public abstract String getName ();
+
+    /**
+     * @return the vectorized kernel if this JVM can run it, the scalar one
+     * otherwise.
+     */
+    public static synchronized RepulsionKernel getDefault () {
+        if (defaultKernel == null) {
+            if (Boolean.parseBoolean(System.getProperty("nodegraph.vector", "true")))
+                defaultKernel = loadVector();
+            if (defaultKernel == null)
+                defaultKernel = new Scalar();
+        }
+        return defaultKernel;
+    }
+
+    /**
+     * @return the vectorized kernel, or null if it wasn't compiled, the JVM
+     * is older than 16 or jdk.incubator.vector wasn't added (e.g. with
+     * --add-modules jdk.incubator.vector).
+     */
+    public static RepulsionKernel loadVector () {
+        try {
+            RepulsionKernel kernel = (RepulsionKernel)Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+            return kernel.isSupported() ? kernel : null;
+        } catch (ReflectiveOperationException | LinkageError | SecurityException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @return false if the kernel can't do better than the scalar one on
+     * this CPU.
+     */
+    protected boolean isSupported () {
+        return true;
+    }
+
+    /**
+     * One pair at a time.
+     */
+    public static class Scalar extends RepulsionKernel {
+        @Override
+        public void repulsion (double[] x, double[] y, int n, int from, int to, double k2,
+                boolean[] pinned, double[] dx, double[] dy) {
+            for (int i = from; i < to; i++) {
+                if (pinned != null && pinned[i])
+                    continue;
+
+                double xi = x[i];
+                double yi = y[i];
+                double fx = 0;
+                double fy = 0;
+
+                for (int j = 0; j < n; j++) {
+                    double xdiff = xi - x[j];
+                    double ydiff = yi - y[j];
+                    double dist2 = xdiff * xdiff + ydiff * ydiff;
+
+                    // Also skips i == j...
+                    if (dist2 > 0) {
+                        double force = k2 / dist2;
+                        fx += xdiff * force;
+                        fy += ydiff * force;
+                    }
+                }
+
+                dx[i] += fx;
+                dy[i] += fy;
+            }
+        }
+
+        @Override
+        public String getName () {
+            return "Scalar";
+        }
+    }
+}
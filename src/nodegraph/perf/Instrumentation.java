@@ -0,0 +1,161 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.perf;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timing of the phases a graph goes through (parsing, layout, rendering...),
+ * kept as counters and forwarded to a Recorder, e.g. as JFR events.
+ * Phases are timed with:
+ * <pre>
+ * long begin = Instrumentation.begin();
+ * ...
+ * Instrumentation.end(Instrumentation.PHASE_PARSE, begin, lines);
+ * </pre>
+ * Counters may be updated from any thread. Everything is skipped when the
+ * nodegraph.stats system property is false.
+ *
+ * @author elio
+ */
+public final class Instrumentation {
+    public static final String[] PHASES = {
+        "Parse", "Set graph", "Placement", "Layout iteration", "Positions", "Edge update", "Draw"
+    };
+    public static final byte
+            PHASE_PARSE = 0,
+            PHASE_SET_GRAPH = 1,
+            PHASE_PLACEMENT = 2,
+            PHASE_LAYOUT_ITERATION = 3,
+            PHASE_POSITIONS = 4,
+            PHASE_EDGE_UPDATE = 5,
+            PHASE_DRAW = 6;
+
+    private static final String JFR_RECORDER = "nodegraph.perf.JfrRecorder";
+
+    // Counters, FIELDS values per phase...
+    private static final int
+            COUNT = 0,
+            ITEMS = 1,
+            TOTAL = 2,
+            LAST = 3,
+            MAX = 4,
+            FIELDS = 5;
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("nodegraph.stats", "true"));
+    private static final AtomicLongArray counters = new AtomicLongArray(PHASES.length * FIELDS);
+    private static final Recorder recorder = ENABLED ? loadRecorder() : null;
+
+    private Instrumentation () {
+    }
+
+    /**
+     * Receives every timed phase.
+     */
+    public static abstract class Recorder {
+        /**
+         * @param items amount of things done, e.g. lines parsed or edges updated.
+         */
+        public abstract void record (byte phase, long nanos, int items);
+    }
+
+    /**
+     * @return the JFR recorder if this JVM has JFR (see src-jfr), else null.
+     */
+    private static Recorder loadRecorder () {
+        try {
+            return (Recorder)Class.forName(JFR_RECORDER).newInstance();
+        } catch (ReflectiveOperationException | LinkageError | SecurityException ex) {
+            return null;
+        }
+    }
+
+    public static boolean isEnabled () {
+        return ENABLED;
+    }
+
+    /**
+     * @return true if phases are recorded as JFR events too.
+     */
+    public static boolean isRecording () {
+        return recorder != null;
+    }
+
+    /**
+     * @return the start time of a phase, to pass to end().
+     */
+    public static long begin () {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Count a phase which started at begin and is over now.
+     * @param items amount of things done, e.g. lines parsed or edges updated.
+     */
+    public static void end (byte phase, long begin, int items) {
+        if (!ENABLED)
+            return;
+
+        long nanos = System.nanoTime() - begin;
+        int offset = phase * FIELDS;
+        counters.incrementAndGet(offset + COUNT);
+        counters.addAndGet(offset + ITEMS, items);
+        counters.addAndGet(offset + TOTAL, nanos);
+        counters.set(offset + LAST, nanos);
+
+        long max = counters.get(offset + MAX);
+        while (nanos > max && !counters.compareAndSet(offset + MAX, max, nanos))
+            max = counters.get(offset + MAX);
+
+        if (recorder != null)
+            recorder.record(phase, nanos, items);
+    }
+
+    /**
+     * @return how many times the phase ran.
+     */
+    public static long getCount (byte phase) {
+        return counters.get(phase * FIELDS + COUNT);
+    }
+
+    /**
+     * @return the amount of things done over every run of the phase.
+     */
+    public static long getItems (byte phase) {
+        return counters.get(phase * FIELDS + ITEMS);
+    }
+
+    public static long getTotalNanos (byte phase) {
+        return counters.get(phase * FIELDS + TOTAL);
+    }
+
+    /**
+     * @return how long the last run of the phase took.
+     */
+    public static long getLastNanos (byte phase) {
+        return counters.get(phase * FIELDS + LAST);
+    }
+
+    public static long getMaxNanos (byte phase) {
+        return counters.get(phase * FIELDS + MAX);
+    }
+
+    /**
+     * @return the mean duration of the phase, 0 if it never ran.
+     */
+    public static double getMeanNanos (byte phase) {
+        long count = getCount(phase);
+        return count == 0 ? 0 : (double)getTotalNanos(phase) / count;
+    }
+
+    /**
+     * Set every counter back to 0.
+     */
+    public static void reset () {
+        for (int i = 0; i < counters.length(); i++)
+            counters.set(i, 0);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.render;
+
+/**
+ * How edge attributes (0.0 to 1.0, see EdgeList.ATTRIBUTES) map to what
+ * is drawn: widths, hue and brightness adjustments, blur and dash sizes.
+ * Shared by the JavaFX views and the SVG export, so both draw the same.
+ *
+ * @author elio
+ */
+public final class EdgeAttributes {
+    /**
+     * Radius of nodes, which edge widths are relative to.
+     */
+    public static final double NODE_RADIUS = 30;
+
+    public static final double
+            DEFAULT_ARROW_WIDTH = 0.1,
+            DEFAULT_TAPERED_WIDTH = 0.5;
+
+    private static final double
+            MINIMUM_ARROWED_WIDTH = 2.0,
+            MAXIMUM_ARROWED_WIDTH = NODE_RADIUS * 2.0,
+
+            MINIMUM_TAPERED_WIDTH = NODE_RADIUS * 0.2,
+            MAXIMUM_TAPERED_WIDTH = NODE_RADIUS * 2,
+
+            MINIMUN_HUE = 0.333,              // = ~170
+            MAXIMUM_HUE = 0.694,              // = ~216
+
+            MAXIMUM_BRIGHTNESS = 0.9,
+
+            HUE_MULTIPLIER = MAXIMUM_HUE - MINIMUN_HUE,
+            TAPERED_WIDTH_MULTIPLIER = MAXIMUM_TAPERED_WIDTH - MINIMUM_TAPERED_WIDTH,
+            ARROWED_WIDTH_MULTIPLIER = MAXIMUM_ARROWED_WIDTH - MINIMUM_ARROWED_WIDTH,
+            BRIGHTNESS_MULTIPLIER = MAXIMUM_BRIGHTNESS,
+            GRAIN_MULTIPLIER = 40,
+            FUZZINESS_MULTIPLIER = 25;
+
+    private EdgeAttributes () {
+    }
+
+    /**
+     * @param w width from 0 to 1, anything else meaning the default width.
+     * @return the actual width of an edge of the given type.
+     */
+    public static double scaledWidth (double w, byte edgeType) {
+        if (w < 0.0 || w > 1)
+            if (edgeType == EdgeGeometry.TYPE_ARROWED)
+                w = DEFAULT_ARROW_WIDTH;
+            else
+                w = DEFAULT_TAPERED_WIDTH;
+
+        if (edgeType == EdgeGeometry.TYPE_ARROWED)
+            return w * ARROWED_WIDTH_MULTIPLIER + MINIMUM_ARROWED_WIDTH;
+
+        return w * TAPERED_WIDTH_MULTIPLIER + MINIMUM_TAPERED_WIDTH;
+    }
+
+    /**
+     * @return the ColorAdjust hue for the given hue (0 to 1).
+     */
+    public static double scaledHue (double h) {
+        return h * HUE_MULTIPLIER;
+    }
+
+    /**
+     * @return the ColorAdjust brightness for the given insignificance (0 to 1).
+     */
+    public static double scaledBrightness (double b) {
+        return b * BRIGHTNESS_MULTIPLIER;
+    }
+
+    /**
+     * @return the blur size for the given fuzziness (0 to 1).
+     */
+    public static double scaledFuzziness (double f) {
+        return f * FUZZINESS_MULTIPLIER;
+    }
+
+    /**
+     * @return the dash size for the given grain (0 to 1).
+     */
+    public static double scaledGrain (double g) {
+        return g * GRAIN_MULTIPLIER;
+    }
+
+    /**
+     * Same as the JavaFX views (see CanvasGraphView.adjust()), on 0xRRGGBB
+     * colors: the hue is rotated, then the color is mixed with white or black.
+     * @param hue ColorAdjust hue, from -1 to 1 (a full turn).
+     * @param brightness ColorAdjust brightness, from -1 (black) to 1 (white).
+     * @return the adjusted color, as 0xRRGGBB.
+     */
+    public static int adjust (int rgb, double hue, double brightness) {
+        double r = ((rgb >> 16) & 0xff) / 255.0;
+        double g = ((rgb >> 8) & 0xff) / 255.0;
+        double b = (rgb & 0xff) / 255.0;
+
+        // To hue (0 to 1), saturation and value...
+        double max = Math.max(r, Math.max(g, b));
+        double min = Math.min(r, Math.min(g, b));
+        double range = max - min;
+        double h = 0;
+        if (range > 0) {
+            if (max == r)
+                h = (g - b) / range;
+            else if (max == g)
+                h = 2 + (b - r) / range;
+            else
+                h = 4 + (r - g) / range;
+            h /= 6;
+        }
+        double s = max > 0 ? range / max : 0;
+
+        // ... rotated, and back.
+        h += hue / 2;
+        h -= Math.floor(h);
+        double sector = h * 6;
+        int i = (int)sector % 6;
+        double f = sector - Math.floor(sector);
+        double p = max * (1 - s);
+        double q = max * (1 - s * f);
+        double t = max * (1 - s * (1 - f));
+        switch (i) {
+            case 0: r = max; g = t; b = p; break;
+            case 1: r = q; g = max; b = p; break;
+            case 2: r = p; g = max; b = t; break;
+            case 3: r = p; g = q; b = max; break;
+            case 4: r = t; g = p; b = max; break;
+            default: r = max; g = p; b = q; break;
+        }
+
+        double towards = brightness > 0 ? 1 : 0;
+        double amount = Math.abs(brightness);
+        r += (towards - r) * amount;
+        g += (towards - g) * amount;
+        b += (towards - b) * amount;
+
+        return (int)Math.round(r * 255) << 16 | (int)Math.round(g * 255) << 8 | (int)Math.round(b * 255);
+    }
+}
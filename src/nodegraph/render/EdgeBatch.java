@@ -0,0 +1,93 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.render;
+
+import java.util.Arrays;
+
+/**
+ * Reusable buffers for computing the outlines of many edges at once with
+ * EdgeGeometry.outlines(). Buffers only grow, so refreshing the same
+ * edges again allocates nothing.
+ *
+ * @author elio
+ */
+public class EdgeBatch {
+    private int count;
+    private double[] sourceX = new double[64];
+    private double[] sourceY = new double[64];
+    private double[] targetX = new double[64];
+    private double[] targetY = new double[64];
+    private byte[] directions = new byte[64];
+    private double[] widths = new double[64];
+    private double[] outlines = new double[64 * EdgeGeometry.OUTLINE_STRIDE];
+    private int[] vertices = new int[64];
+
+    public void clear () {
+        count = 0;
+    }
+
+    /**
+     * Queue an edge.
+     * @return its index in the batch.
+     */
+    public int add (byte direction, double sx, double sy, double tx, double ty, double width) {
+        if (count == directions.length)
+            grow(count * 2);
+
+        sourceX[count] = sx;
+        sourceY[count] = sy;
+        targetX[count] = tx;
+        targetY[count] = ty;
+        directions[count] = direction;
+        widths[count] = width;
+        return count++;
+    }
+
+    private void grow (int capacity) {
+        sourceX = Arrays.copyOf(sourceX, capacity);
+        sourceY = Arrays.copyOf(sourceY, capacity);
+        targetX = Arrays.copyOf(targetX, capacity);
+        targetY = Arrays.copyOf(targetY, capacity);
+        directions = Arrays.copyOf(directions, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+        outlines = new double[capacity * EdgeGeometry.OUTLINE_STRIDE];
+        vertices = new int[capacity];
+    }
+
+    /**
+     * Compute the outline of every queued edge.
+     */
+    public void compute (byte type, double targetOffset) {
+        EdgeGeometry.outlines(count, type, targetOffset, sourceX, sourceY, targetX, targetY,
+                directions, widths, outlines, vertices);
+    }
+
+    public int size () {
+        return count;
+    }
+
+    /**
+     * @return the buffer holding every outline, see getOffset().
+     */
+    public double[] getOutlines () {
+        return outlines;
+    }
+
+    /**
+     * @return where the outline of the i-th edge starts in getOutlines().
+     */
+    public int getOffset (int i) {
+        return i * EdgeGeometry.OUTLINE_STRIDE;
+    }
+
+    public int getVertexCount (int i) {
+        return vertices[i];
+    }
+
+    public byte getDirection (int i) {
+        return directions[i];
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.render;
+
+/**
+ * Edge outlines computed on primitives.
+ * Vertices are written as x, y pairs into a caller provided array, so
+ * nothing is allocated per edge.
+ *
+ * The perpendicular of the edge is taken from the unit vector going from
+ * the target to the source, u = (ux, uy), as p = (-uy, ux).
+ *
+ * @author elio
+ */
+public final class EdgeGeometry {
+    public static final byte
+            TYPE_TAPERED = 0,
+            TYPE_ARROWED = 1;
+
+    public static final byte
+            DIRECTION_NONE = 0,
+            DIRECTION_ONEWAY = 1,
+            DIRECTION_BOTHWAYS = 2;
+
+    public static final double
+            ARROW_HEAD_OPENNESS = 10,
+            ARROW_HEAD_SIZE = 30;
+
+    /**
+     * Vertices of each outline. Arrows are: source A, head start A, head
+     * side A, tip, head side B, head start B, source B. Tapered edges are:
+     * source A, source B, tip. Lines are: source, tip.
+     */
+    public static final int
+            ARROW_VERTICES = 7,
+            TAPERED_VERTICES = 3,
+            LINE_VERTICES = 2;
+
+    /**
+     * Doubles taken by every outline written by outlines().
+     */
+    public static final int OUTLINE_STRIDE = ARROW_VERTICES * 2;
+
+    private EdgeGeometry () {
+    }
+
+    /**
+     * @return the amount of vertices of the outline for the given edge.
+     */
+    public static int vertices (byte direction, byte type) {
+        if (direction == DIRECTION_NONE)
+            return LINE_VERTICES;
+        return type == TYPE_ARROWED ? ARROW_VERTICES : TAPERED_VERTICES;
+    }
+
+    /**
+     * Write the outline of an edge into out, starting at offset.
+     *
+     * @param targetOffset distance between the tip and the target position
+     * (e.g. the node radius).
+     * @param width edge width, already scaled for its type.
+     * @return the amount of vertices written.
+     */
+    public static int outline (byte direction, byte type, double sx, double sy, double tx, double ty,
+            double targetOffset, double width, double[] out, int offset) {
+        double ux = sx - tx;
+        double uy = sy - ty;
+        double length = Math.sqrt(ux * ux + uy * uy);
+
+        if (length > 0) {
+            ux /= length;
+            uy /= length;
+        }
+
+        // Tip, moved away from the target towards the source...
+        double tipX = tx + ux * targetOffset;
+        double tipY = ty + uy * targetOffset;
+
+        if (direction == DIRECTION_NONE) {
+            out[offset] = sx;
+            out[offset + 1] = sy;
+            out[offset + 2] = tipX;
+            out[offset + 3] = tipY;
+            return LINE_VERTICES;
+        }
+
+        double px = -uy;
+        double py = ux;
+        double half = width / 2;
+
+        if (type == TYPE_ARROWED) {
+            double headX = tipX + ux * ARROW_HEAD_SIZE;
+            double headY = tipY + uy * ARROW_HEAD_SIZE;
+            double side = ARROW_HEAD_OPENNESS + half;
+
+            out[offset] = sx + half * px;
+            out[offset + 1] = sy + half * py;
+            out[offset + 2] = headX + half * px;
+            out[offset + 3] = headY + half * py;
+            out[offset + 4] = headX + side * px;
+            out[offset + 5] = headY + side * py;
+            out[offset + 6] = tipX;
+            out[offset + 7] = tipY;
+            out[offset + 8] = headX - side * px;
+            out[offset + 9] = headY - side * py;
+            out[offset + 10] = headX - half * px;
+            out[offset + 11] = headY - half * py;
+            out[offset + 12] = sx - half * px;
+            out[offset + 13] = sy - half * py;
+            return ARROW_VERTICES;
+        }
+
+        out[offset] = sx - half * px;
+        out[offset + 1] = sy - half * py;
+        out[offset + 2] = sx + half * px;
+        out[offset + 3] = sy + half * py;
+        out[offset + 4] = tipX;
+        out[offset + 5] = tipY;
+        return TAPERED_VERTICES;
+    }
+
+    /**
+     * Write the outlines of many edges of the given type into out, edge i
+     * starting at i * OUTLINE_STRIDE, and their amount of vertices into
+     * vertices. Arrays other than out and vertices hold one value per edge.
+     */
+    public static void outlines (int count, byte type, double targetOffset,
+            double[] sourceX, double[] sourceY, double[] targetX, double[] targetY,
+            byte[] directions, double[] widths, double[] out, int[] vertices) {
+        for (int i = 0; i < count; i++)
+            vertices[i] = outline(directions[i], type, sourceX[i], sourceY[i], targetX[i], targetY[i],
+                    targetOffset, widths[i], out, i * OUTLINE_STRIDE);
+    }
+
+    /**
+     * @return the amount of grain dashes across an outline written by outline().
+     */
+    public static int dashes (byte direction, byte type, double[] outline, int offset, double grain) {
+        if (grain <= 0.0 || direction == DIRECTION_NONE)
+            return 0;
+
+        // Dashes advance 2 * grain from source A towards head side A (or the
+        // tip), which are both the third vertex...
+        double length = distance(outline, offset, offset + 4);
+        if (length < grain)
+            return 0;
+
+        return (int)((length - grain) / (2 * grain)) + 1;
+    }
+
+    /**
+     * Write the grain dashes of an outline written by outline() into out, as
+     * lines of two vertices each.
+     * @return the amount of dashes written.
+     */
+    public static int dashes (byte direction, byte type, double[] outline, int offset, double grain,
+            double[] out, int outOffset) {
+        int count = dashes(direction, type, outline, offset, grain);
+        if (count == 0)
+            return 0;
+
+        // Lines go from one side of the edge to the other...
+        int a = offset;
+        int aTo = offset + 4;
+        int b = type == TYPE_ARROWED ? offset + 12 : offset + 2;
+        int bTo = type == TYPE_ARROWED ? offset + 8 : offset + 4;
+
+        double lengthA = distance(outline, a, aTo);
+        double lengthB = distance(outline, b, bTo);
+        double ax = lengthA > 0 ? (outline[aTo] - outline[a]) / lengthA : 0;
+        double ay = lengthA > 0 ? (outline[aTo + 1] - outline[a + 1]) / lengthA : 0;
+        double bx = lengthB > 0 ? (outline[bTo] - outline[b]) / lengthB : 0;
+        double by = lengthB > 0 ? (outline[bTo + 1] - outline[b + 1]) / lengthB : 0;
+
+        for (int i = 1; i <= count; i++) {
+            double step = 2 * grain * i;
+            int o = outOffset + (i - 1) * 4;
+            out[o] = outline[a] + ax * step;
+            out[o + 1] = outline[a + 1] + ay * step;
+            out[o + 2] = outline[b] + bx * step;
+            out[o + 3] = outline[b + 1] + by * step;
+        }
+
+        return count;
+    }
+
+    private static double distance (double[] v, int i, int j) {
+        double dx = v[j] - v[i];
+        double dy = v[j + 1] - v[i + 1];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
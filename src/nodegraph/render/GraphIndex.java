@@ -0,0 +1,179 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.render;
+
+import java.util.Arrays;
+import nodegraph.io.EdgeList;
+
+/**
+ * Spatial indices over the nodes (as squares around their positions) and
+ * the edges (as the bounding boxes of their endpoints) of a graph, for
+ * finding what's inside a viewport or under the mouse. A dragged node and
+ * its edges can be moved without indexing everything again.
+ *
+ * @author elio
+ */
+public class GraphIndex {
+    private final double nodeRadius;
+    private final double edgePadding;
+
+    private final SpatialIndex nodes = new SpatialIndex();
+    private final SpatialIndex edges = new SpatialIndex();
+
+    // Edge bounding boxes, reused between builds...
+    private double[] minX = new double[0];
+    private double[] minY = new double[0];
+    private double[] maxX = new double[0];
+    private double[] maxY = new double[0];
+
+    /**
+     * Edges of node i are incident[incidentStart[i]] to
+     * incident[incidentStart[i + 1] - 1], computed when first needed after
+     * every build.
+     */
+    private int[] incidentStart = new int[1];
+    private int[] incident = new int[0];
+    private boolean incidentValid;
+
+    // Results of the last query...
+    private int[] visibleNodes = new int[16];
+    private int visibleNodeCount;
+    private int[] visibleEdges = new int[16];
+    private int visibleEdgeCount;
+
+    /**
+     * @param nodeRadius half the size of every node.
+     * @param edgePadding how much edges stick out of their endpoints'
+     * bounding box (e.g. half their maximum width).
+     */
+    public GraphIndex (double nodeRadius, double edgePadding) {
+        this.nodeRadius = nodeRadius;
+        this.edgePadding = edgePadding;
+    }
+
+    /**
+     * Index the given graph with nodes at the given positions.
+     */
+    public void build (EdgeList edgeList, double[] x, double[] y) {
+        int m = edgeList.getEdgeCount();
+        if (minX.length < m) {
+            minX = new double[m];
+            minY = new double[m];
+            maxX = new double[m];
+            maxY = new double[m];
+        }
+
+        for (int e = 0; e < m; e++) {
+            int s = edgeList.getSource(e);
+            int t = edgeList.getTarget(e);
+            minX[e] = Math.min(x[s], x[t]) - edgePadding;
+            minY[e] = Math.min(y[s], y[t]) - edgePadding;
+            maxX[e] = Math.max(x[s], x[t]) + edgePadding;
+            maxY[e] = Math.max(y[s], y[t]) + edgePadding;
+        }
+
+        nodes.build(edgeList.getNodeCount(), x, y, nodeRadius);
+        edges.build(m, minX, minY, maxX, maxY);
+        incidentValid = false;
+    }
+
+    /**
+     * Update node i and its edges to the given positions, which should be
+     * the ones the graph was built with but for node i. Queries stay exact;
+     * they just check moved nodes and edges on their own until the next
+     * build().
+     */
+    public void moveNode (EdgeList edgeList, int i, double[] x, double[] y) {
+        if (!incidentValid)
+            buildIncident(edgeList);
+
+        nodes.move(i, x[i] - nodeRadius, y[i] - nodeRadius, x[i] + nodeRadius, y[i] + nodeRadius);
+        for (int k = incidentStart[i]; k < incidentStart[i + 1]; k++) {
+            int e = incident[k];
+            int s = edgeList.getSource(e);
+            int t = edgeList.getTarget(e);
+            edges.move(e, Math.min(x[s], x[t]) - edgePadding, Math.min(y[s], y[t]) - edgePadding,
+                    Math.max(x[s], x[t]) + edgePadding, Math.max(y[s], y[t]) + edgePadding);
+        }
+    }
+
+    private void buildIncident (EdgeList edgeList) {
+        int n = edgeList.getNodeCount();
+        int m = edgeList.getEdgeCount();
+        if (incidentStart.length < n + 1)
+            incidentStart = new int[n + 1];
+        if (incident.length < 2 * m)
+            incident = new int[2 * m];
+
+        Arrays.fill(incidentStart, 0, n + 1, 0);
+        for (int e = 0; e < m; e++) {
+            incidentStart[edgeList.getSource(e) + 1]++;
+            incidentStart[edgeList.getTarget(e) + 1]++;
+        }
+        for (int i = 0; i < n; i++)
+            incidentStart[i + 1] += incidentStart[i];
+
+        int[] fill = Arrays.copyOf(incidentStart, n);
+        for (int e = 0; e < m; e++) {
+            incident[fill[edgeList.getSource(e)]++] = e;
+            incident[fill[edgeList.getTarget(e)]++] = e;
+        }
+        incidentValid = true;
+    }
+
+    /**
+     * @return the amount of nodes moved since the last build().
+     */
+    public int getMovedNodeCount () {
+        return nodes.getMovedCount();
+    }
+
+    /**
+     * Find the nodes and edges intersecting the given box.
+     * Results are kept until the next query, see getVisibleNode() and
+     * getVisibleEdge().
+     */
+    public void query (double left, double top, double right, double bottom) {
+        visibleNodeCount = nodes.query(left, top, right, bottom);
+        if (visibleNodes.length < visibleNodeCount)
+            visibleNodes = new int[visibleNodeCount];
+        for (int i = 0; i < visibleNodeCount; i++)
+            visibleNodes[i] = nodes.getResult(i);
+
+        visibleEdgeCount = edges.query(left, top, right, bottom);
+        if (visibleEdges.length < visibleEdgeCount)
+            visibleEdges = new int[visibleEdgeCount];
+        for (int i = 0; i < visibleEdgeCount; i++)
+            visibleEdges[i] = edges.getResult(i);
+
+        // Keep drawing order stable, whatever the grid order was...
+        Arrays.sort(visibleNodes, 0, visibleNodeCount);
+        Arrays.sort(visibleEdges, 0, visibleEdgeCount);
+    }
+
+    public int getVisibleNodeCount () {
+        return visibleNodeCount;
+    }
+
+    public int getVisibleNode (int i) {
+        return visibleNodes[i];
+    }
+
+    public int getVisibleEdgeCount () {
+        return visibleEdgeCount;
+    }
+
+    public int getVisibleEdge (int i) {
+        return visibleEdges[i];
+    }
+
+    /**
+     * @return the node under (x, y), or -1 if there is none.
+     */
+    public int nodeAt (double x, double y) {
+        return nodes.nearest(x, y);
+    }
+}
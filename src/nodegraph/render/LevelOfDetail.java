@@ -0,0 +1,65 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.render;
+
+/**
+ * How much detail is worth drawing, given the zoom, how many nodes and
+ * edges are on screen and whether they are moving.
+ * At full detail everything is drawn. At draft detail, used while moving,
+ * blur and grain are left out. At simple detail labels are left out too.
+ * At point detail nodes are points and edges are thin lines, without any
+ * effect.
+ *
+ * @author elio
+ */
+public final class LevelOfDetail {
+    public static final byte
+            DETAIL_FULL = 0,
+            DETAIL_DRAFT = 1,
+            DETAIL_SIMPLE = 2,
+            DETAIL_POINTS = 3;
+
+    /**
+     * Below these zoom levels, or above these amounts of visible elements
+     * (nodes plus edges), detail goes down a level.
+     */
+    public static final double
+            SIMPLE_ZOOM = 0.5,
+            POINTS_ZOOM = 0.2;
+    public static final int
+            SIMPLE_COUNT = 2000,
+            POINTS_COUNT = 20000;
+
+    /**
+     * Width of lines and points, in pixels, at point detail.
+     */
+    public static final double POINT_SIZE = 1.5;
+
+    private LevelOfDetail () {
+    }
+
+    /**
+     * @param zoom how many pixels a graph unit takes.
+     * @param visible amount of nodes and edges in the viewport.
+     * @return one of the DETAIL_* levels.
+     */
+    public static byte choose (double zoom, int visible) {
+        if (zoom < POINTS_ZOOM || visible > POINTS_COUNT)
+            return DETAIL_POINTS;
+        if (zoom < SIMPLE_ZOOM || visible > SIMPLE_COUNT)
+            return DETAIL_SIMPLE;
+        return DETAIL_FULL;
+    }
+
+    /**
+     * @param moving true while dragging or animating.
+     * @return one of the DETAIL_* levels, at most DETAIL_DRAFT when moving.
+     */
+    public static byte choose (double zoom, int visible, boolean moving) {
+        byte detail = choose(zoom, visible);
+        return moving && detail == DETAIL_FULL ? DETAIL_DRAFT : detail;
+    }
+}
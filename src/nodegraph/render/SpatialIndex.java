@@ -0,0 +1,300 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.render;
+
+import java.util.Arrays;
+
+/**
+ * Hierarchical grid over axis aligned bounding boxes, for finding what's
+ * under the mouse or inside the viewport without checking every item.
+ * Every level has cells twice as big as the previous one, up to a single
+ * cell, and items go in the finest level where they don't cover too many
+ * cells: long edges end up in a few coarse cells instead of being checked
+ * by every query.
+ * Items are identified by their index. The grid is built in bulk (two
+ * passes, no per item allocation). A few items can be moved afterwards
+ * without rebuilding it, see move().
+ *
+ * @author elio
+ */
+public class SpatialIndex {
+    private static final int MAX_CELLS_PER_SIDE = 1024;
+
+    /**
+     * Enough for halving MAX_CELLS_PER_SIDE down to a single cell.
+     */
+    private static final int MAX_LEVELS = 12;
+
+    /**
+     * Items covering more cells than this (e.g. very long edges) go in a
+     * coarser level.
+     */
+    private static final int MAX_CELLS_PER_ITEM = 64;
+
+    private int count;
+    private double[] minX = new double[0];
+    private double[] minY = new double[0];
+    private double[] maxX = new double[0];
+    private double[] maxY = new double[0];
+
+    // Geometry of the finest level...
+    private double originX;
+    private double originY;
+    private double cellWidth;
+    private double cellHeight;
+    private int columns;
+    private int rows;
+
+    /**
+     * Level l has cells 2^l times as big as the finest ones, and its cell
+     * (c, r) is levelStart[l] + r * levelColumns[l] + c.
+     */
+    private int levelCount;
+    private final int[] levelStart = new int[MAX_LEVELS];
+    private final int[] levelColumns = new int[MAX_LEVELS];
+    private byte[] itemLevels = new byte[0];
+
+    /**
+     * Items of cell c are cellItems[cellStart[c]] to cellItems[cellStart[c + 1] - 1].
+     */
+    private int[] cellStart = new int[1];
+    private int[] cellItems = new int[0];
+
+    /**
+     * Items moved since the last build. Their cells are stale, so queries
+     * check them on their own.
+     */
+    private int[] moved = new int[16];
+    private int movedCount;
+    private boolean[] isMoved = new boolean[0];
+
+    // Query results and the stamps used for not returning an item twice...
+    private int[] results = new int[16];
+    private int resultCount;
+    private int[] stamps = new int[0];
+    private int stamp;
+
+    /**
+     * Index points, each one taken as a square of the given radius.
+     */
+    public void build (int count, double[] x, double[] y, double radius) {
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            minX[i] = x[i] - radius;
+            minY[i] = y[i] - radius;
+            maxX[i] = x[i] + radius;
+            maxY[i] = y[i] + radius;
+        }
+        build(count);
+    }
+
+    /**
+     * Index boxes.
+     */
+    public void build (int count, double[] minX, double[] minY, double[] maxX, double[] maxY) {
+        ensureCapacity(count);
+        System.arraycopy(minX, 0, this.minX, 0, count);
+        System.arraycopy(minY, 0, this.minY, 0, count);
+        System.arraycopy(maxX, 0, this.maxX, 0, count);
+        System.arraycopy(maxY, 0, this.maxY, 0, count);
+        build(count);
+    }
+
+    private void ensureCapacity (int count) {
+        if (minX.length < count) {
+            minX = new double[count];
+            minY = new double[count];
+            maxX = new double[count];
+            maxY = new double[count];
+            stamps = new int[count];
+            itemLevels = new byte[count];
+            isMoved = new boolean[count];
+        }
+    }
+
+    private void build (int count) {
+        this.count = count;
+        for (int k = 0; k < movedCount; k++)
+            isMoved[moved[k]] = false;
+        movedCount = 0;
+
+        double left = Double.POSITIVE_INFINITY, top = Double.POSITIVE_INFINITY;
+        double right = Double.NEGATIVE_INFINITY, bottom = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            left = Math.min(left, minX[i]);
+            top = Math.min(top, minY[i]);
+            right = Math.max(right, maxX[i]);
+            bottom = Math.max(bottom, maxY[i]);
+        }
+
+        int side = (int)Math.min(MAX_CELLS_PER_SIDE, Math.max(1, Math.ceil(Math.sqrt(count))));
+        columns = side;
+        rows = side;
+        originX = count == 0 ? 0 : left;
+        originY = count == 0 ? 0 : top;
+        cellWidth = count == 0 || right <= left ? 1 : (right - left) / columns;
+        cellHeight = count == 0 || bottom <= top ? 1 : (bottom - top) / rows;
+
+        // Levels, from the finest one to a single cell (the grid is square)...
+        int cells = 0;
+        levelCount = 0;
+        do {
+            levelStart[levelCount] = cells;
+            levelColumns[levelCount] = ((columns - 1) >> levelCount) + 1;
+            cells += levelColumns[levelCount] * levelColumns[levelCount];
+        } while (levelColumns[levelCount++] > 1);
+
+        // First pass: how many items go in every cell...
+        if (cellStart.length < cells + 1)
+            cellStart = new int[cells + 1];
+        Arrays.fill(cellStart, 0, cells + 1, 0);
+
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            int c0 = column(minX[i]), c1 = column(maxX[i]);
+            int r0 = row(minY[i]), r1 = row(maxY[i]);
+
+            int l = 0;
+            while (((c1 >> l) - (c0 >> l) + 1) * ((r1 >> l) - (r0 >> l) + 1) > MAX_CELLS_PER_ITEM)
+                l++;
+            itemLevels[i] = (byte)l;
+
+            for (int r = r0 >> l; r <= r1 >> l; r++)
+                for (int c = c0 >> l; c <= c1 >> l; c++)
+                    cellStart[levelStart[l] + r * levelColumns[l] + c + 1]++;
+            total += ((c1 >> l) - (c0 >> l) + 1) * ((r1 >> l) - (r0 >> l) + 1);
+        }
+
+        for (int c = 0; c < cells; c++)
+            cellStart[c + 1] += cellStart[c];
+
+        // Second pass: fill the cells...
+        if (cellItems.length < total)
+            cellItems = new int[total];
+        int[] fill = Arrays.copyOf(cellStart, cells);
+
+        for (int i = 0; i < count; i++) {
+            int l = itemLevels[i];
+            int c0 = column(minX[i]) >> l, c1 = column(maxX[i]) >> l;
+            int r0 = row(minY[i]) >> l, r1 = row(maxY[i]) >> l;
+
+            for (int r = r0; r <= r1; r++)
+                for (int c = c0; c <= c1; c++)
+                    cellItems[fill[levelStart[l] + r * levelColumns[l] + c]++] = i;
+        }
+    }
+
+    /**
+     * Give item i a new box without rebuilding the grid. Meant for a few
+     * items at a time, e.g. a dragged node and its edges: every query
+     * checks every moved item until the next build.
+     */
+    public void move (int i, double minX, double minY, double maxX, double maxY) {
+        this.minX[i] = minX;
+        this.minY[i] = minY;
+        this.maxX[i] = maxX;
+        this.maxY[i] = maxY;
+
+        if (!isMoved[i]) {
+            isMoved[i] = true;
+            if (movedCount == moved.length)
+                moved = Arrays.copyOf(moved, movedCount * 2);
+            moved[movedCount++] = i;
+        }
+    }
+
+    /**
+     * @return the amount of items moved since the last build.
+     */
+    public int getMovedCount () {
+        return movedCount;
+    }
+
+    private int column (double x) {
+        return Math.max(0, Math.min(columns - 1, (int)((x - originX) / cellWidth)));
+    }
+
+    private int row (double y) {
+        return Math.max(0, Math.min(rows - 1, (int)((y - originY) / cellHeight)));
+    }
+
+    /**
+     * Find the items whose box intersects the given one.
+     * @return the amount of items found, see getResult().
+     */
+    public int query (double left, double top, double right, double bottom) {
+        resultCount = 0;
+        if (count == 0)
+            return 0;
+
+        if (++stamp == 0) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+
+        int c0 = column(left), c1 = column(right);
+        int r0 = row(top), r1 = row(bottom);
+
+        for (int l = 0; l < levelCount; l++)
+            for (int r = r0 >> l; r <= r1 >> l; r++)
+                for (int c = c0 >> l; c <= c1 >> l; c++) {
+                    int cell = levelStart[l] + r * levelColumns[l] + c;
+                    for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++)
+                        collect(cellItems[k], left, top, right, bottom);
+                }
+
+        // Stale cells of moved items were checked against their new boxes
+        // already, but they may be elsewhere now...
+        for (int k = 0; k < movedCount; k++)
+            collect(moved[k], left, top, right, bottom);
+
+        return resultCount;
+    }
+
+    private void collect (int i, double left, double top, double right, double bottom) {
+        if (stamps[i] == stamp)
+            return;
+        stamps[i] = stamp;
+
+        if (maxX[i] < left || minX[i] > right || maxY[i] < top || minY[i] > bottom)
+            return;
+
+        if (resultCount == results.length)
+            results = Arrays.copyOf(results, resultCount * 2);
+        results[resultCount++] = i;
+    }
+
+    /**
+     * @return the i-th item found by the last query.
+     */
+    public int getResult (int i) {
+        return results[i];
+    }
+
+    /**
+     * @return the item whose box center is the closest to (x, y), as long as
+     * (x, y) is inside its box, or -1 if there is none.
+     */
+    public int nearest (double x, double y) {
+        int found = query(x, y, x, y);
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+
+        for (int k = 0; k < found; k++) {
+            int i = results[k];
+            double dx = (minX[i] + maxX[i]) / 2 - x;
+            double dy = (minY[i] + maxY[i]) / 2 - y;
+            double distance = dx * dx + dy * dy;
+
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+
+        return best;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.io;
+
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Edge list parsing, including what is reported as errors.
+ *
+ * @author elio
+ */
+public class EdgeListParserTest {
+    @Test
+    public void testOperators () {
+        EdgeList edgeList = new EdgeListParser().parse("A\nB-C\nC>D\nD<>a\n");
+        LabelIndex labels = edgeList.getLabels();
+
+        assertEquals(0, edgeList.getErrorCount());
+        assertEquals(4, edgeList.getNodeCount());
+        assertEquals(3, edgeList.getEdgeCount());
+        assertEquals(EdgeList.DIRECTION_NONE, edgeList.getDirection(0));
+        assertEquals(EdgeList.DIRECTION_ONEWAY, edgeList.getDirection(1));
+        assertEquals(EdgeList.DIRECTION_BOTHWAYS, edgeList.getDirection(2));
+        assertEquals(labels.get("C"), edgeList.getSource(1));
+        assertEquals(labels.get("D"), edgeList.getTarget(1));
+
+        // Labels are case insensitive...
+        assertEquals(labels.get("A"), edgeList.getTarget(2));
+    }
+
+    @Test
+    public void testAttributes () {
+        EdgeList edgeList = new EdgeListParser().parse("A-B w=0.5 h=0.3 b=0 o=1 f=1e-1 g=.25 x=7\nB-C\n");
+
+        assertEquals(0, edgeList.getErrorCount());
+        assertEquals(0.5, edgeList.getAttribute(0, EdgeList.ATTR_WIDTH), 0);
+        assertEquals(0.3, edgeList.getAttribute(0, EdgeList.ATTR_HUE), 0);
+        assertEquals(0.0, edgeList.getAttribute(0, EdgeList.ATTR_BRIGHTNESS), 0);
+        assertEquals(1.0, edgeList.getAttribute(0, EdgeList.ATTR_OPACITY), 0);
+        assertEquals(0.1, edgeList.getAttribute(0, EdgeList.ATTR_FUZZINESS), 0);
+        assertEquals(0.25, edgeList.getAttribute(0, EdgeList.ATTR_GRAIN), 0);
+        for (int a = 0; a < EdgeList.ATTRIBUTES.length; a++)
+            assertEquals(EdgeList.DEFAULTS[a], edgeList.getAttribute(1, a), 0);
+    }
+
+    @Test
+    public void testInvalidValues () {
+        EdgeList edgeList = new EdgeListParser().parse(
+                "A-B w=abc\nA-B h=NaN\nA-B o=Infinity\nA-B f=-Infinity\nA-B b=1.5\nA-B g=-0.1\nA-B w\n");
+
+        assertEquals(7, edgeList.getErrorCount());
+        for (int i = 0; i < 7; i++)
+            assertEquals(i + 1, edgeList.getErrors().get(i).getLine());
+
+        // The edges are kept, with default values...
+        assertEquals(7, edgeList.getEdgeCount());
+        for (int e = 0; e < 7; e++)
+            for (int a = 0; a < EdgeList.ATTRIBUTES.length; a++)
+                assertEquals(EdgeList.DEFAULTS[a], edgeList.getAttribute(e, a), 0);
+    }
+
+    @Test
+    public void testInvalidEdges () {
+        EdgeList edgeList = new EdgeListParser().parse("A-B\n\n-B\nA>\nA-B-C\nA>B-C\nA<>B>C\nC<>D\n");
+
+        assertEquals(5, edgeList.getErrorCount());
+        assertEquals(3, edgeList.getErrors().get(0).getLine());
+        assertEquals(4, edgeList.getErrors().get(1).getLine());
+        assertEquals(5, edgeList.getErrors().get(2).getLine());
+        assertEquals(6, edgeList.getErrors().get(3).getLine());
+        assertEquals(7, edgeList.getErrors().get(4).getLine());
+
+        // No "B-C" node, and only the valid edges...
+        assertEquals(-1, edgeList.getLabels().get("B-C"));
+        assertEquals(2, edgeList.getEdgeCount());
+        assertEquals(8, edgeList.getLineCount());
+    }
+
+    @Test
+    public void testReader () throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++)
+            text.append("n").append(i).append("-n").append(i + 1).append(i == 15000 ? " w=2\n" : " w=0.5\n");
+
+        EdgeList edgeList = new EdgeListParser().parse(new StringReader(text.toString()));
+        assertEquals(20000, edgeList.getEdgeCount());
+        assertEquals(20001, edgeList.getNodeCount());
+        assertEquals(1, edgeList.getErrorCount());
+        assertEquals(15001, edgeList.getErrors().get(0).getLine());
+    }
+}
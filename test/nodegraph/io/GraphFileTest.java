@@ -0,0 +1,166 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Graph files written and read back.
+ *
+ * @author elio
+ */
+public class GraphFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip () throws IOException {
+        EdgeList edgeList = new EdgeList();
+        LabelIndex labels = edgeList.getLabels();
+        int a = labels.getOrAdd("A");
+        int b = labels.getOrAdd("Bé");
+        int c = labels.getOrAdd("日本");
+        labels.getOrAdd("lonely");
+
+        // By source, since that's the order they are read back in...
+        int ab = edgeList.addEdge(a, b, EdgeList.DIRECTION_NONE);
+        int ac = edgeList.addEdge(a, c, EdgeList.DIRECTION_BOTHWAYS);
+        int ca = edgeList.addEdge(c, a, EdgeList.DIRECTION_ONEWAY);
+        edgeList.setAttribute(ab, EdgeList.ATTR_HUE, 0.123456789);
+        edgeList.setAttribute(ac, EdgeList.ATTR_WIDTH, 1.0 / 3);
+        edgeList.setAttribute(ca, EdgeList.ATTR_GRAIN, 0.0);
+
+        double[] x = {0.5, -1e9, Math.PI, 0};
+        double[] y = {1.0 / 7, 2, -3.25, 1e-12};
+        GraphFile read = roundTrip(new GraphFile(edgeList, x, y));
+        EdgeList edges = read.getEdgeList();
+
+        assertEquals(4, edges.getNodeCount());
+        assertEquals(3, edges.getEdgeCount());
+        for (int i = 0; i < 4; i++)
+            assertEquals(labels.getLabel(i), edges.getLabels().getLabel(i));
+        assertEquals(c, edges.getLabels().get("日本"));
+        assertArrayEquals(x, read.getX(), 0);
+        assertArrayEquals(y, read.getY(), 0);
+
+        for (int e = 0; e < 3; e++) {
+            assertEquals(edgeList.getSource(e), edges.getSource(e));
+            assertEquals(edgeList.getTarget(e), edges.getTarget(e));
+            assertEquals(edgeList.getDirection(e), edges.getDirection(e));
+            for (int k = 0; k < EdgeList.ATTRIBUTES.length; k++)
+                assertEquals(edgeList.getAttribute(e, k), edges.getAttribute(e, k), 0);
+        }
+    }
+
+    @Test
+    public void testEdgesGroupedBySource () throws IOException {
+        EdgeList edgeList = new EdgeListParser().parse("B-A\nA-B h=0.2\nB-C\nA-C h=0.4\n");
+        int n = edgeList.getNodeCount();
+        EdgeList edges = roundTrip(new GraphFile(edgeList, new double[n], new double[n])).getEdgeList();
+
+        assertEquals(4, edges.getEdgeCount());
+        int[] source = new int[4];
+        int[] target = new int[4];
+        double[] hue = new double[4];
+        for (int e = 0; e < 4; e++) {
+            source[e] = edges.getSource(e);
+            target[e] = edges.getTarget(e);
+            hue[e] = edges.getAttribute(e, EdgeList.ATTR_HUE);
+        }
+        // B is node 0, A is 1 and C is 2...
+        assertArrayEquals(new int[] {0, 0, 1, 1}, source);
+        assertArrayEquals(new int[] {1, 2, 0, 2}, target);
+        assertArrayEquals(new double[] {0, 0, 0.2, 0.4}, hue, 0);
+    }
+
+    @Test
+    public void testEmpty () throws IOException {
+        GraphFile read = roundTrip(new GraphFile(new EdgeList(), new double[0], new double[0]));
+        assertEquals(0, read.getEdgeList().getNodeCount());
+        assertEquals(0, read.getEdgeList().getEdgeCount());
+        assertEquals(0, read.getX().length);
+    }
+
+    @Test
+    public void testNodesOnly () throws IOException {
+        EdgeList edgeList = new EdgeListParser().parse("A\nB\n");
+        GraphFile read = roundTrip(new GraphFile(edgeList, new double[] {1, 2}, new double[] {3, 4}));
+        assertEquals(2, read.getEdgeList().getNodeCount());
+        assertEquals(0, read.getEdgeList().getEdgeCount());
+        assertEquals("B", read.getEdgeList().getLabels().getLabel(1));
+        assertArrayEquals(new double[] {3, 4}, read.getY(), 0);
+    }
+
+    @Test
+    public void testIsGraphFile () throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, "A-B\n".getBytes("UTF-8"));
+        assertFalse(GraphFile.isGraphFile(file));
+
+        new GraphFile(new EdgeList(), new double[0], new double[0]).write(file);
+        assertTrue(GraphFile.isGraphFile(file));
+    }
+
+    @Test
+    public void testCorrupt () throws IOException {
+        EdgeList edgeList = new EdgeListParser().parse("A-B\n");
+        Path file = folder.newFile().toPath();
+        new GraphFile(edgeList, new double[2], new double[2]).write(file);
+        byte[] valid = Files.readAllBytes(file);
+
+        // Truncated...
+        assertInvalid(file, Arrays.copyOf(valid, valid.length - 1));
+
+        // ... wrong version...
+        ByteBuffer bytes = ByteBuffer.wrap(valid.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.putInt(4, GraphFile.VERSION + 1);
+        assertInvalid(file, bytes.array());
+
+        // ... more label chars than bytes...
+        bytes = ByteBuffer.wrap(valid.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.putInt(16, bytes.getInt(20) + 1);
+        assertInvalid(file, bytes.array());
+
+        // ... direction out of range (the byte before the labels "AB")...
+        bytes = ByteBuffer.wrap(valid.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.put(valid.length - 3, (byte)(EdgeList.DIRECTION_BOTHWAYS + 1));
+        assertInvalid(file, bytes.array());
+
+        // ... and labels not starting at 0 (labelEnds, before the direction).
+        bytes = ByteBuffer.wrap(valid.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.putInt(valid.length - 3 - 12, 1);
+        assertInvalid(file, bytes.array());
+    }
+
+    private GraphFile roundTrip (GraphFile graph) throws IOException {
+        Path file = folder.newFile().toPath();
+        graph.write(file);
+        return GraphFile.read(file);
+    }
+
+    private static void assertInvalid (Path file, byte[] content) throws IOException {
+        Files.write(file, content);
+        try {
+            GraphFile.read(file);
+            fail("Read an invalid file");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+}
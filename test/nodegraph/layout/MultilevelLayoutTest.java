@@ -0,0 +1,46 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.layout;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Positions of the given graph while coarser levels are laid out.
+ *
+ * @author elio
+ */
+public class MultilevelLayoutTest {
+    @Test
+    public void testUpdateGraph () {
+        LayoutGraph graph = new LayoutGraph();
+        for (int i = 0; i < 400; i++)
+            graph.addNode();
+        for (int i = 1; i < 400; i++)
+            graph.addEdge(i - 1, i);
+        graph.placeOnCircle(500, 500, 400);
+
+        MultilevelLayout layout = new MultilevelLayout(graph, 1000, 1000, 1);
+        assertTrue(layout.getLevelCount() > 1);
+
+        // Coarse steps leave the given graph alone...
+        double x = graph.getX(0), y = graph.getY(0);
+        for (int i = 0; i < 10; i++)
+            layout.step();
+        assertTrue(layout.getLevel() > 0);
+        assertEquals(x, graph.getX(0), 0);
+        assertEquals(y, graph.getY(0), 0);
+
+        // ... until asked for, every node being where its coarse node is.
+        layout.updateGraph();
+        assertTrue(graph.getX(0) != x || graph.getY(0) != y);
+        assertEquals(graph.getX(0), graph.getX(1), 0);
+        assertEquals(graph.getY(0), graph.getY(1), 0);
+
+        layout.shutdown();
+    }
+}
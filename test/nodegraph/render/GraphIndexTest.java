@@ -0,0 +1,54 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.render;
+
+import nodegraph.io.EdgeList;
+import nodegraph.io.EdgeListParser;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Viewport queries and hit tests, before and after moving nodes.
+ *
+ * @author elio
+ */
+public class GraphIndexTest {
+    @Test
+    public void testMoveNode () {
+        EdgeList edgeList = new EdgeListParser().parse("A-B\nB-C\n");
+        double[] x = {0, 100, 200};
+        double[] y = {0, 0, 0};
+        GraphIndex index = new GraphIndex(5, 1);
+        index.build(edgeList, x, y);
+
+        index.query(90, 490, 110, 510);
+        assertEquals(0, index.getVisibleNodeCount());
+        assertEquals(0, index.getVisibleEdgeCount());
+
+        // B is dragged far away, taking its two edges along...
+        x[1] = 100;
+        y[1] = 500;
+        index.moveNode(edgeList, 1, x, y);
+        assertEquals(1, index.getMovedNodeCount());
+
+        index.query(90, 490, 110, 510);
+        assertEquals(1, index.getVisibleNodeCount());
+        assertEquals(1, index.getVisibleNode(0));
+        assertEquals(2, index.getVisibleEdgeCount());
+        assertEquals(1, index.nodeAt(101, 499));
+        assertEquals(-1, index.nodeAt(100, 0));
+
+        // Its old cells don't report it anymore...
+        index.query(90, -10, 110, 10);
+        assertEquals(0, index.getVisibleNodeCount());
+
+        index.build(edgeList, x, y);
+        assertEquals(0, index.getMovedNodeCount());
+        index.query(90, 490, 110, 510);
+        assertEquals(1, index.getVisibleNodeCount());
+        assertEquals(2, index.getVisibleEdgeCount());
+    }
+}
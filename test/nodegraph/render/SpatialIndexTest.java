@@ -0,0 +1,73 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package nodegraph.render;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Queries against checking every box, with boxes of every size so that all
+ * levels get items.
+ *
+ * @author elio
+ */
+public class SpatialIndexTest {
+    private static final int COUNT = 2000;
+
+    @Test
+    public void testQuery () {
+        Random random = new Random(1);
+        double[] minX = new double[COUNT], minY = new double[COUNT];
+        double[] maxX = new double[COUNT], maxY = new double[COUNT];
+        for (int i = 0; i < COUNT; i++)
+            randomBox(random, minX, minY, maxX, maxY, i);
+
+        SpatialIndex index = new SpatialIndex();
+        index.build(COUNT, minX, minY, maxX, maxY);
+        for (int q = 0; q < 200; q++)
+            checkQuery(random, index, minX, minY, maxX, maxY);
+
+        // Moved boxes are found where they are now, and only there...
+        for (int i = 0; i < COUNT; i += 50) {
+            randomBox(random, minX, minY, maxX, maxY, i);
+            index.move(i, minX[i], minY[i], maxX[i], maxY[i]);
+        }
+        for (int q = 0; q < 200; q++)
+            checkQuery(random, index, minX, minY, maxX, maxY);
+    }
+
+    private static void randomBox (Random random, double[] minX, double[] minY, double[] maxX, double[] maxY, int i) {
+        // Mostly small boxes, some spanning up to the whole area...
+        double size = Math.pow(random.nextDouble(), 4) * 1000;
+        minX[i] = random.nextDouble() * 1000;
+        minY[i] = random.nextDouble() * 1000;
+        maxX[i] = minX[i] + random.nextDouble() * size;
+        maxY[i] = minY[i] + random.nextDouble() * size;
+    }
+
+    private static void checkQuery (Random random, SpatialIndex index,
+            double[] minX, double[] minY, double[] maxX, double[] maxY) {
+        double left = random.nextDouble() * 1200 - 100;
+        double top = random.nextDouble() * 1200 - 100;
+        double right = left + random.nextDouble() * 300;
+        double bottom = top + random.nextDouble() * 300;
+
+        int[] expected = new int[COUNT];
+        int expectedCount = 0;
+        for (int i = 0; i < COUNT; i++)
+            if (maxX[i] >= left && minX[i] <= right && maxY[i] >= top && minY[i] <= bottom)
+                expected[expectedCount++] = i;
+
+        int[] found = new int[index.query(left, top, right, bottom)];
+        for (int k = 0; k < found.length; k++)
+            found[k] = index.getResult(k);
+        Arrays.sort(found);
+
+        assertArrayEquals(Arrays.copyOf(expected, expectedCount), found);
+    }
+}